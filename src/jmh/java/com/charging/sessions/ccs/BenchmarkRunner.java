@@ -0,0 +1,31 @@
+package com.charging.sessions.ccs;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the JMH benchmarks once per thread count of the {@code jmh.threads} system property, default {@code 1,4,16}.
+ * The arguments are the usual JMH command line options, e.g. a benchmark name pattern and {@code -p storeSize=1000}
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLineOptions;
+        try {
+            commandLineOptions = new CommandLineOptions(args);
+        } catch (CommandLineOptionException e) {
+            System.err.println("Invalid JMH options: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        for (String threads : System.getProperty("jmh.threads", "1,4,16").split(",")) {
+            new Runner(new OptionsBuilder()
+                    .parent(commandLineOptions)
+                    .threads(Integer.parseInt(threads.trim()))
+                    .build()).run();
+        }
+    }
+}
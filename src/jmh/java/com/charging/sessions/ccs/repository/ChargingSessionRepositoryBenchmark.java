@@ -0,0 +1,113 @@
+package com.charging.sessions.ccs.repository;
+
+import com.charging.sessions.ccs.journal.SessionJournal;
+import com.charging.sessions.ccs.model.ChargingSession;
+import com.charging.sessions.ccs.model.StopResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput and latency of the repository hot paths at several store sizes. The journal is disabled,
+ * so only the in-memory store is measured
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class ChargingSessionRepositoryBenchmark {
+
+    private static final int STATIONS = 1000;
+
+    /**
+     * The number of sessions stored before the measurement
+     */
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int storeSize;
+
+    @Param({"RANDOM", "TIME_ORDERED"})
+    private SessionIdStrategy idStrategy;
+
+    private ChargingSessionRepositoryImpl repository;
+
+    private long[] idHi;
+
+    private long[] idLo;
+
+    /**
+     * The sessions in progress to be stopped by {@link #stopSession()}, refilled before each iteration
+     */
+    private UUID[] sessionsToStop;
+
+    private final AtomicInteger nextSessionToStop = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void fillStore() {
+        repository = new ChargingSessionRepositoryImpl(SessionJournal.NONE, idStrategy.generator());
+        idHi = new long[storeSize];
+        idLo = new long[storeSize];
+        for (int i = 0; i < storeSize; i++) {
+            UUID sessionId = repository.addNewSession("station" + i % STATIONS).getId();
+            idHi[i] = sessionId.getMostSignificantBits();
+            idLo[i] = sessionId.getLeastSignificantBits();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void addSessionsToStop() {
+        // enough for the fastest iterations, once they are all stopped the already stopped path is measured
+        sessionsToStop = new UUID[Math.max(storeSize / 10, 100_000)];
+        for (int i = 0; i < sessionsToStop.length; i++) {
+            sessionsToStop[i] = repository.addNewSession("station" + i % STATIONS).getId();
+        }
+        nextSessionToStop.set(0);
+    }
+
+    @Benchmark
+    public ChargingSession addNewSession() {
+        return repository.addNewSession("station" + ThreadLocalRandom.current().nextInt(STATIONS));
+    }
+
+    @Benchmark
+    public Optional<ChargingSession> findById() {
+        int i = ThreadLocalRandom.current().nextInt(storeSize);
+        return repository.findById(new UUID(idHi[i], idLo[i]));
+    }
+
+    @Benchmark
+    public StopResult stopSession() {
+        return repository.stopSession(sessionsToStop[nextSessionToStop.getAndIncrement() % sessionsToStop.length]);
+    }
+
+    /**
+     * Adds of the writers of a group whose other thread scans the whole store, see {@link #scanWhileAdding()}
+     */
+    @Benchmark
+    @Group("scanWhileAdding")
+    @GroupThreads(3)
+    public ChargingSession addWhileScanning() {
+        return addNewSession();
+    }
+
+    /**
+     * A full scan takes no lock, so the adds of the same group only lose the processor time taken by the scan
+     */
+    @Benchmark
+    @Group("scanWhileAdding")
+    @GroupThreads(1)
+    public long scanWhileAdding() {
+        long[] stoppedSessions = new long[1];
+        repository.forEachSession((idHi, idLo, stationId, startedAt, stoppedAt) -> {
+            if (stoppedAt != 0) {
+                stoppedSessions[0]++;
+            }
+        });
+        return stoppedSessions[0];
+    }
+}
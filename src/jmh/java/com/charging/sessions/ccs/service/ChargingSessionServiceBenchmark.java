@@ -0,0 +1,88 @@
+package com.charging.sessions.ccs.service;
+
+import com.charging.sessions.ccs.feed.FeedProperties;
+import com.charging.sessions.ccs.feed.SessionFeed;
+import com.charging.sessions.ccs.journal.SessionJournal;
+import com.charging.sessions.ccs.payload.ChargingSessionAnalyticsPayload;
+import com.charging.sessions.ccs.payload.ChargingSessionPagePayload;
+import com.charging.sessions.ccs.payload.ChargingSessionRequestPayload;
+import com.charging.sessions.ccs.payload.ChargingSessionSummaryPayload;
+import com.charging.sessions.ccs.repository.ChargingSessionRepositoryImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Throughput and latency of the summary, of a page of sessions and of the whole-history aggregation at several
+ * store sizes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class ChargingSessionServiceBenchmark {
+
+    private static final int BATCH_SIZE = ChargingSessionServiceImpl.MAX_BATCH_SIZE;
+
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * The number of sessions submitted before the measurement
+     */
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int storeSize;
+
+    private ChargingSessionRepositoryImpl repository;
+
+    private ChargingSessionServiceImpl service;
+
+    @Setup(Level.Trial)
+    public void fillStore() {
+        repository = new ChargingSessionRepositoryImpl(SessionJournal.NONE);
+        // the feed has no subscribers, so the events are not serialized
+        service = new ChargingSessionServiceImpl(repository, new SimpleMeterRegistry(),
+                new SessionFeed(new FeedProperties(), new ObjectMapper()), new IdempotencyProperties());
+
+        // the sessions are submitted in batches, half of them are stopped
+        var requests = new ArrayList<ChargingSessionRequestPayload>(BATCH_SIZE);
+        for (int i = 0; i < storeSize; i += BATCH_SIZE) {
+            requests.clear();
+            for (int j = i; j < Math.min(i + BATCH_SIZE, storeSize); j++) {
+                requests.add(new ChargingSessionRequestPayload("station" + j % 1000));
+            }
+            var sessionIds = service.submitChargingSessions(requests).join().stream()
+                    .map(result -> result.getSession().getId())
+                    .collect(Collectors.toList());
+            service.stopChargingSessions(sessionIds.subList(0, sessionIds.size() / 2)).join();
+        }
+    }
+
+    @Benchmark
+    public ChargingSessionSummaryPayload fetchSessionsSummary() {
+        return service.fetchSessionsSummary();
+    }
+
+    /**
+     * A full aggregation on the common pool, without the result served again by {@link SessionAnalyticsServiceImpl}
+     */
+    @Benchmark
+    public ChargingSessionAnalyticsPayload aggregateSessions() {
+        return ForkJoinPool.commonPool().invoke(new SessionAggregationTask(repository, 0,
+                repository.sessionPositionLimit(), new AnalyticsProperties().getChunkSize())).toPayload();
+    }
+
+    /**
+     * The first page of the sessions, read from the store and mapped to their payloads
+     */
+    @Benchmark
+    public ChargingSessionPagePayload fetchChargingSessionsPage() {
+        return service.fetchChargingSessions(null, PAGE_SIZE);
+    }
+}
@@ -1,60 +1,304 @@
 package com.charging.sessions.ccs.controller;
 
+import com.charging.sessions.ccs.feed.SessionFeed;
+import com.charging.sessions.ccs.payload.ChargingSessionBatchResultPayload;
+import com.charging.sessions.ccs.payload.ChargingSessionHistogramPayload;
+import com.charging.sessions.ccs.payload.ChargingSessionPagePayload;
 import com.charging.sessions.ccs.payload.ChargingSessionRequestPayload;
 import com.charging.sessions.ccs.payload.ChargingSessionResponsePayload;
 import com.charging.sessions.ccs.payload.ChargingSessionSummaryPayload;
+import com.charging.sessions.ccs.payload.SessionPayloadWriter;
 import com.charging.sessions.ccs.service.ChargingSessionService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 @RestController
 @RequestMapping("chargingSessions")
 public class ChargingSessionController {
 
+    /**
+     * Media type of the streaming mode, one JSON session per line
+     */
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    /**
+     * Header of the key that makes the retries of a submit return the session of the first one
+     */
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
     private final ChargingSessionService chargingSessionService;
 
-    public ChargingSessionController(ChargingSessionService chargingSessionService) {
+    private final ObjectMapper objectMapper;
+
+    /**
+     * The converter of the CBOR requests and responses, whose object mapper also writes the CBOR session lists
+     */
+    private final MappingJackson2CborHttpMessageConverter cborHttpMessageConverter;
+
+    private final SessionFeed sessionFeed;
+
+    private final SessionListCache sessionListCache;
+
+    public ChargingSessionController(ChargingSessionService chargingSessionService, ObjectMapper objectMapper,
+                                     MappingJackson2CborHttpMessageConverter cborHttpMessageConverter,
+                                     SessionFeed sessionFeed, ResponseCacheProperties responseCacheProperties) {
         this.chargingSessionService = chargingSessionService;
+        this.objectMapper = objectMapper;
+        this.cborHttpMessageConverter = cborHttpMessageConverter;
+        this.sessionFeed = sessionFeed;
+        this.sessionListCache = new SessionListCache(responseCacheProperties.getMaxBodySize().toBytes());
     }
 
     @PostMapping
-    public ChargingSessionResponsePayload addSession(@Valid @RequestBody ChargingSessionRequestPayload request) {
-        log.info("Request to add a new charging session. Station: {}", request.getStationId());
-        return chargingSessionService.submitChargingSession(request);
+    public CompletableFuture<ResponseEntity<ChargingSessionResponsePayload>> addSession(
+            @Valid @RequestBody ChargingSessionRequestPayload request,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        log.debug("Request to add a new charging session. Station: {}", request.getStationId());
+        return chargingSessionService.submitChargingSession(request, idempotencyKey)
+                .thenApply(ResponseEntity::ok)
+                .exceptionally(failure -> {
+                    var cause = unwrap(failure);
+                    if (cause instanceof IllegalArgumentException) {
+                        return ResponseEntity.badRequest().build();
+                    } else if (cause instanceof IllegalStateException) {
+                        return ResponseEntity.unprocessableEntity().build();
+                    }
+                    throw new CompletionException(cause);
+                });
     }
 
     @PutMapping("{id}")
-    public ResponseEntity<ChargingSessionResponsePayload> stopSession(@PathVariable String id) {
-        ChargingSessionResponsePayload chargingSession;
+    public CompletableFuture<ResponseEntity<ChargingSessionResponsePayload>> stopSession(@PathVariable String id) {
+        UUID sessionId;
         try {
-            UUID sessionId = UUID.fromString(id);
-            log.info("Request to stop a charging session. Id: {}", sessionId);
-            chargingSession = chargingSessionService.stopChargingSession(sessionId);
+            sessionId = UUID.fromString(id);
         } catch (IllegalArgumentException e) {
-            return ResponseEntity.notFound().build();
-        } catch (IllegalStateException e) {
-            return ResponseEntity.badRequest().build();
+            return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
         }
 
-        return ResponseEntity.ok(chargingSession);
+        log.debug("Request to stop a charging session. Id: {}", sessionId);
+        return chargingSessionService.stopChargingSession(sessionId)
+                .thenApply(ResponseEntity::ok)
+                .exceptionally(failure -> {
+                    var cause = unwrap(failure);
+                    if (cause instanceof IllegalArgumentException) {
+                        return ResponseEntity.notFound().build();
+                    } else if (cause instanceof IllegalStateException) {
+                        return ResponseEntity.badRequest().build();
+                    }
+                    throw new CompletionException(cause);
+                });
     }
 
+    @PostMapping("batch")
+    public CompletableFuture<ResponseEntity<List<ChargingSessionBatchResultPayload>>> addSessions(
+            @RequestBody List<ChargingSessionRequestPayload> requests) {
+        log.debug("Request to add a batch of {} charging sessions", requests.size());
+        return batchResponse(chargingSessionService.submitChargingSessions(requests));
+    }
+
+    @PutMapping("batch/stop")
+    public CompletableFuture<ResponseEntity<List<ChargingSessionBatchResultPayload>>> stopSessions(
+            @RequestBody List<String> ids) {
+        log.debug("Request to stop a batch of {} charging sessions", ids.size());
+        return batchResponse(chargingSessionService.stopChargingSessions(ids));
+    }
+
+    /**
+     * All the charging sessions as a JSON or CBOR array, written straight from the store by a
+     * {@link SessionPayloadWriter} rather than mapped to payloads and serialized by the message converters.
+     * The response is tagged with the modification version of the sessions: a request whose If-None-Match matches
+     * gets a 304, and while the version is unchanged the body written last is served again
+     */
     @GetMapping
-    public Set<ChargingSessionResponsePayload> fetchSessions() {
+    public ResponseEntity<StreamingResponseBody> fetchSessions(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept, WebRequest webRequest) {
         log.info("Request to retrieve all the charging sessions");
-        return chargingSessionService.fetchChargingSessions();
+        var mediaType = negotiate(accept);
+        if (mediaType == null) {
+            return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE).build();
+        }
+
+        // the version is read before the sessions, so a cached body is never older than its version
+        var version = chargingSessionService.fetchSessionsVersion();
+        var etag = sessionListCache.etag(mediaType, version);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+
+        var mapper = mediaType.equals(MediaType.APPLICATION_CBOR)
+                ? cborHttpMessageConverter.getObjectMapper() : objectMapper;
+        StreamingResponseBody body = outputStream -> sessionListCache.write(mediaType, version, outputStream,
+                cacheOutputStream -> {
+                    try (var generator = mapper.getFactory().createGenerator(cacheOutputStream)) {
+                        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                        var writer = new SessionPayloadWriter(generator, mapper.getSerializationConfig());
+                        generator.writeStartArray();
+                        chargingSessionService.visitChargingSessions(writer);
+                        generator.writeEndArray();
+                    } catch (UncheckedIOException e) {
+                        throw e.getCause();
+                    }
+                });
+
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .eTag(etag)
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(body);
+    }
+
+    @GetMapping("active")
+    public Set<ChargingSessionResponsePayload> fetchActiveSessions() {
+        log.info("Request to retrieve the charging sessions in progress");
+        return chargingSessionService.fetchActiveChargingSessions();
+    }
+
+    @GetMapping(params = "stationId")
+    public Set<ChargingSessionResponsePayload> fetchStationSessions(@RequestParam String stationId) {
+        log.info("Request to retrieve the charging sessions of station: {}", stationId);
+        return chargingSessionService.fetchChargingSessionsByStation(stationId);
     }
 
+    @GetMapping(params = {"limit", "!stationId"})
+    public ResponseEntity<ChargingSessionPagePayload> fetchSessionsPage(@RequestParam int limit,
+                                                                        @RequestParam(required = false) String cursor) {
+        log.info("Request to retrieve a page of charging sessions. Limit: {}", limit);
+        try {
+            return ResponseEntity.ok(chargingSessionService.fetchChargingSessions(cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping(produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamSessions() {
+        log.info("Request to stream all the charging sessions");
+        StreamingResponseBody body = outputStream -> {
+            try (var generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+
+                var writer = new SessionPayloadWriter(generator, objectMapper.getSerializationConfig());
+                chargingSessionService.visitChargingSessions((idHi, idLo, stationId, startedAt, stoppedAt) -> {
+                    writer.visit(idHi, idLo, stationId, startedAt, stoppedAt);
+                    try {
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(body);
+    }
+
+    @GetMapping(value = "feed", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter followSessions() {
+        log.info("Request to follow the charging session events");
+        return sessionFeed.subscribe();
+    }
+
+    /**
+     * The summary is tagged with its counts, a request whose If-None-Match matches gets a 304
+     */
     @GetMapping("summary")
-    public ChargingSessionSummaryPayload fetchSessionSummary() {
+    public ResponseEntity<ChargingSessionSummaryPayload> fetchSessionSummary() {
         log.info("Request to retrieve a latest summary of submitted charging sessions");
-        return chargingSessionService.fetchSessionsSummary();
+        var summary = chargingSessionService.fetchSessionsSummary();
+        // weak, the JSON and CBOR representations of the same counts are equivalent
+        return ResponseEntity.ok()
+                .eTag("W/\"" + summary.getTotalCount() + '-' + summary.getStartedCount() + '-'
+                        + summary.getStoppedCount() + '"')
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(summary);
+    }
+
+    @GetMapping(value = "summary", params = {"from", "to"})
+    public ResponseEntity<ChargingSessionHistogramPayload> fetchSessionHistogram(
+            @RequestParam Instant from, @RequestParam Instant to, @RequestParam(defaultValue = "hour") String granularity) {
+        log.info("Request to retrieve a summary of charging sessions from {} to {} by {}", from, to, granularity);
+        try {
+            return ResponseEntity.ok(chargingSessionService.fetchSessionsSummary(Date.from(from), Date.from(to), granularity));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * The most preferred of JSON and CBOR among the accepted media types, JSON when any is accepted
+     *
+     * @param accept the Accept header, any media type if {@code null}
+     * @return the media type of the response, {@code null} when neither is accepted
+     */
+    private static MediaType negotiate(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+
+        List<MediaType> acceptedTypes;
+        try {
+            acceptedTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+        MediaType.sortBySpecificityAndQuality(acceptedTypes);
+        for (var acceptedType : acceptedTypes) {
+            if (acceptedType.includes(MediaType.APPLICATION_JSON)) {
+                return MediaType.APPLICATION_JSON;
+            } else if (acceptedType.includes(MediaType.APPLICATION_CBOR)) {
+                return MediaType.APPLICATION_CBOR;
+            }
+        }
+        return null;
+    }
+
+    private static CompletableFuture<ResponseEntity<List<ChargingSessionBatchResultPayload>>> batchResponse(
+            CompletableFuture<List<ChargingSessionBatchResultPayload>> results) {
+        return results
+                .thenApply(ResponseEntity::ok)
+                .exceptionally(failure -> {
+                    var cause = unwrap(failure);
+                    if (cause instanceof IllegalArgumentException) {
+                        return ResponseEntity.badRequest().build();
+                    }
+                    throw new CompletionException(cause);
+                });
+    }
+
+    /**
+     * The failure of an operation, without the {@link CompletionException} wrapping it in a dependent stage
+     */
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
     }
 
 }
@@ -0,0 +1,16 @@
+package com.charging.sessions.ccs.controller;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@ConfigurationProperties(prefix = "ccs.response-cache")
+public class ResponseCacheProperties {
+
+    /**
+     * The maximum size of a cached session list body, a larger list is written again for every request.
+     * {@code 0} disables the cache, the conditional requests are still answered
+     */
+    private DataSize maxBodySize = DataSize.ofMegabytes(32);
+}
@@ -0,0 +1,57 @@
+package com.charging.sessions.ccs.controller;
+
+import com.charging.sessions.ccs.payload.ChargingSessionAnalyticsPayload;
+import com.charging.sessions.ccs.payload.ChargingSessionConcurrencyPayload;
+import com.charging.sessions.ccs.payload.ChargingSessionDurationsPayload;
+import com.charging.sessions.ccs.service.SessionAnalyticsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Whole-history aggregates of the charging sessions. The request thread is released while they are computed
+ */
+@Slf4j
+@RestController
+@RequestMapping("chargingSessions/analytics")
+public class SessionAnalyticsController {
+
+    private final SessionAnalyticsService sessionAnalyticsService;
+
+    public SessionAnalyticsController(SessionAnalyticsService sessionAnalyticsService) {
+        this.sessionAnalyticsService = sessionAnalyticsService;
+    }
+
+    @GetMapping
+    public CompletableFuture<ResponseEntity<ChargingSessionAnalyticsPayload>> fetchAnalytics() {
+        log.info("Request to retrieve the analytics of all the charging sessions");
+        return sessionAnalyticsService.fetchSessionsAnalytics()
+                .thenApply(ResponseEntity::ok);
+    }
+
+    @GetMapping("stations")
+    public CompletableFuture<ResponseEntity<Map<String, Long>>> fetchStationAnalytics() {
+        log.info("Request to retrieve the number of charging sessions per station");
+        return sessionAnalyticsService.fetchSessionsAnalytics()
+                .thenApply(analytics -> ResponseEntity.ok(analytics.getStations()));
+    }
+
+    @GetMapping("durations")
+    public CompletableFuture<ResponseEntity<ChargingSessionDurationsPayload>> fetchDurationAnalytics() {
+        log.info("Request to retrieve the durations of the finished charging sessions");
+        return sessionAnalyticsService.fetchSessionsAnalytics()
+                .thenApply(analytics -> ResponseEntity.ok(analytics.getDurations()));
+    }
+
+    @GetMapping("concurrency")
+    public CompletableFuture<ResponseEntity<ChargingSessionConcurrencyPayload>> fetchConcurrencyAnalytics() {
+        log.info("Request to retrieve the peak of the charging sessions in progress");
+        return sessionAnalyticsService.fetchSessionsAnalytics()
+                .thenApply(analytics -> ResponseEntity.ok(analytics.getConcurrency()));
+    }
+}
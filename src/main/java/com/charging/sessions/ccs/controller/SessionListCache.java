@@ -0,0 +1,117 @@
+package com.charging.sessions.ccs.controller;
+
+import lombok.Value;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Serialized bodies of the session list, one per media type, reused while the modification version of the sessions
+ * is unchanged. A body is captured while it is written to the response that builds it, and is only kept if it fits
+ * in the maximum size.
+ * <p>
+ * The entity tag of a list is its version and media type, prefixed with an id of this instance, so that a tag
+ * issued before a restart or by another instance never matches
+ */
+class SessionListCache {
+
+    private final String instanceId = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+    private final long maxBodySize;
+
+    private final Map<MediaType, CachedBody> bodies = new ConcurrentHashMap<>();
+
+    SessionListCache(long maxBodySize) {
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * The strong entity tag of the list in a media type at a version
+     */
+    String etag(MediaType mediaType, long version) {
+        return '"' + instanceId + '-' + version + '-' + mediaType.getSubtype() + '"';
+    }
+
+    /**
+     * Write the list to a response, from the cache if a body was cached at the version, otherwise with the writer
+     *
+     * @param mediaType    the media type of the body
+     * @param version      the modification version read before the sessions
+     * @param outputStream the body of the response
+     * @param writer       writes the list when it is not cached
+     */
+    void write(MediaType mediaType, long version, OutputStream outputStream, BodyWriter writer) throws IOException {
+        var cached = bodies.get(mediaType);
+        if (cached != null && cached.getVersion() == version) {
+            outputStream.write(cached.getBody());
+            return;
+        }
+
+        if (maxBodySize <= 0) {
+            writer.write(outputStream);
+            return;
+        }
+        var capture = new CapturingOutputStream(outputStream);
+        writer.write(capture);
+        if (capture.captured != null) {
+            // a slower writer of an older version does not replace a newer body
+            var body = new CachedBody(version, capture.captured.toByteArray());
+            bodies.merge(mediaType, body, (current, next) -> next.getVersion() >= current.getVersion() ? next : current);
+        }
+    }
+
+    @FunctionalInterface
+    interface BodyWriter {
+
+        void write(OutputStream outputStream) throws IOException;
+    }
+
+    @Value
+    private static class CachedBody {
+
+        private long version;
+
+        private byte[] body;
+    }
+
+    /**
+     * Writes through to the response and keeps a copy, dropped once it exceeds the maximum size
+     */
+    private class CapturingOutputStream extends FilterOutputStream {
+
+        private ByteArrayOutputStream captured = new ByteArrayOutputStream();
+
+        private CapturingOutputStream(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (capture(1)) {
+                captured.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (capture(len)) {
+                captured.write(b, off, len);
+            }
+        }
+
+        private boolean capture(int length) {
+            if (captured != null && captured.size() + (long) length > maxBodySize) {
+                captured = null;
+            }
+            return captured != null;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.charging.sessions.ccs.controller;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Binary CBOR encoding of the payloads, negotiated with {@code Accept: application/cbor} and read from
+ * {@code Content-Type: application/cbor}. The timestamps are written as epoch milliseconds and the session ids as
+ * their 16 bytes, so a list of sessions is several times smaller and cheaper to encode than its JSON.
+ * JSON stays the default when the client accepts both
+ */
+@Configuration
+public class WireFormatConfiguration {
+
+    /**
+     * Replaces the default CBOR converter, which comes after the JSON one
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter() {
+        return new MappingJackson2CborHttpMessageConverter(Jackson2ObjectMapperBuilder.cbor()
+                .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build());
+    }
+}
@@ -0,0 +1,16 @@
+package com.charging.sessions.ccs.feed;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(FeedProperties.class)
+public class FeedConfiguration {
+
+    @Bean
+    public SessionFeed sessionFeed(FeedProperties properties, ObjectMapper objectMapper) {
+        return new SessionFeed(properties, objectMapper);
+    }
+}
@@ -0,0 +1,37 @@
+package com.charging.sessions.ccs.feed;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "ccs.feed")
+public class FeedProperties {
+
+    /**
+     * The maximum number of events waiting to be sent to one subscriber, the next ones are dropped until it catches up
+     */
+    private int bufferSize = 256;
+
+    /**
+     * The delay between two checks of the summary, which is sent to the subscribers when it changed
+     */
+    private Duration summaryInterval = Duration.ofSeconds(5);
+
+    /**
+     * The time after which a subscription is closed, the client then reconnects
+     */
+    private Duration timeout = Duration.ofMinutes(30);
+
+    /**
+     * The number of threads sending the buffered events to the subscribers
+     */
+    private int dispatchThreads = 4;
+
+    /**
+     * The time one send to a subscriber may take. A subscriber whose send takes longer is closed, so that a stalled
+     * connection does not hold a dispatch thread
+     */
+    private Duration sendTimeout = Duration.ofSeconds(10);
+}
@@ -0,0 +1,298 @@
+package com.charging.sessions.ccs.feed;
+
+import com.charging.sessions.ccs.payload.ChargingSessionSummaryPayload;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Live feed of the charging session events, pushed to the subscribers as Server-Sent Events.
+ * <p>
+ * Each event is serialized once and offered to the bounded buffer of every subscriber, the publishing thread never
+ * writes to a connection. A few dispatch threads drain the buffers to the connections. When a subscriber does not keep
+ * up its buffer fills and the next events are dropped, then an {@value #OVERFLOW} event with the number of dropped
+ * events is sent once the buffered ones are, so that the client knows to reload the sessions. A send that takes longer
+ * than the send timeout closes its subscriber, so that stalled connections cannot hold every dispatch thread.
+ */
+@Slf4j
+public class SessionFeed implements MeterBinder, Closeable {
+
+    public static final String SESSION_STARTED = "session.started";
+    public static final String SESSION_STOPPED = "session.stopped";
+    public static final String SUMMARY = "summary";
+    public static final String OVERFLOW = "overflow";
+
+    private final int bufferSize;
+
+    private final long timeout;
+
+    private final long sendTimeoutNanos;
+
+    private final ObjectMapper objectMapper;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService dispatcher;
+
+    /**
+     * The id of the last published event, so that the clients can tell the events apart
+     */
+    private final AtomicLong lastEventId = new AtomicLong();
+
+    private final LongAdder droppedEvents = new LongAdder();
+
+    /**
+     * The last summary sent, {@code null} when the next one must be sent even if unchanged. It is forgotten while there
+     * are no subscribers, since it is no longer checked
+     */
+    private volatile ChargingSessionSummaryPayload lastSummary;
+
+    public SessionFeed(FeedProperties properties, ObjectMapper objectMapper) {
+        this.bufferSize = properties.getBufferSize();
+        this.timeout = properties.getTimeout().toMillis();
+        this.sendTimeoutNanos = properties.getSendTimeout().toNanos();
+        this.objectMapper = objectMapper;
+        this.dispatcher = Executors.newFixedThreadPool(properties.getDispatchThreads(), runnable -> {
+            var thread = new Thread(runnable, "session-feed-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Subscribe to the events published from now on
+     */
+    public SseEmitter subscribe() {
+        return subscribe(new SseEmitter(timeout));
+    }
+
+    SseEmitter subscribe(SseEmitter emitter) {
+        var subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(failure -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+
+        // only the new subscriber gets the last summary, the others already have it.
+        // Without one yet, the next check sends it to every subscriber
+        var summary = lastSummary;
+        if (summary != null) {
+            var event = event(SUMMARY, summary);
+            if (event != null) {
+                subscriber.offer(event);
+            }
+        }
+        return emitter;
+    }
+
+    /**
+     * Publish an event to the current subscribers without waiting for it to be sent
+     *
+     * @param name the name of the event
+     * @param data the data of the event, serialized to JSON
+     */
+    public void publish(String name, Object data) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+
+        var event = event(name, data);
+        if (event == null) {
+            return;
+        }
+        for (var subscriber : subscribers) {
+            subscriber.offer(event);
+        }
+    }
+
+    /**
+     * Publish the summary if it changed since the last one published
+     *
+     * @param summary supplies the current summary, only called when there are subscribers
+     */
+    public void publishSummary(Supplier<ChargingSessionSummaryPayload> summary) {
+        if (subscribers.isEmpty()) {
+            lastSummary = null;
+            return;
+        }
+
+        var currentSummary = summary.get();
+        if (!currentSummary.equals(lastSummary)) {
+            lastSummary = currentSummary;
+            publish(SUMMARY, currentSummary);
+        }
+    }
+
+    /**
+     * Serialize an event with the next id
+     *
+     * @return the event, or {@code null} if its data failed to be serialized
+     */
+    private Event event(String name, Object data) {
+        try {
+            return new Event(lastEventId.incrementAndGet(), name, objectMapper.writeValueAsString(data));
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize the {} event", name, e);
+            return null;
+        }
+    }
+
+    /**
+     * Close the subscribers whose current send takes longer than the send timeout. Completing the emitter closes the
+     * response, which fails the stalled write and releases its dispatch thread
+     */
+    public void closeStalledSubscribers() {
+        var now = System.nanoTime();
+        for (var subscriber : subscribers) {
+            var sendStartedAt = subscriber.sendStartedAt;
+            if (sendStartedAt != Subscriber.NOT_SENDING && now - sendStartedAt > sendTimeoutNanos) {
+                log.warn("Closing a live feed subscriber whose send stalled for more than {} ms",
+                        TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+                subscriber.close(new TimeoutException("Live feed send timed out"));
+            }
+        }
+    }
+
+    public int countSubscribers() {
+        return subscribers.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("ccs.feed.subscribers", this, SessionFeed::countSubscribers)
+                .description("The number of live feed subscribers")
+                .register(registry);
+        FunctionCounter.builder("ccs.feed.events.dropped", droppedEvents, LongAdder::sum)
+                .description("The number of live feed events dropped because a subscriber did not keep up")
+                .register(registry);
+    }
+
+    @Override
+    public void close() {
+        dispatcher.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+
+    @Value
+    private static class Event {
+
+        private long id;
+
+        private String name;
+
+        /**
+         * The data of the event, serialized once for all the subscribers
+         */
+        private String json;
+    }
+
+    private class Subscriber {
+
+        private static final long NOT_SENDING = Long.MIN_VALUE;
+
+        private final SseEmitter emitter;
+
+        private final ArrayBlockingQueue<Event> buffer = new ArrayBlockingQueue<>(bufferSize);
+
+        /**
+         * Whether a dispatch thread is draining the buffer, so that one subscriber is sent to by one thread at a time
+         */
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        /**
+         * The events dropped since the last {@value #OVERFLOW} event was sent
+         */
+        private final AtomicLong dropped = new AtomicLong();
+
+        /**
+         * When the current send started in {@link System#nanoTime()}, {@value #NOT_SENDING} between sends
+         */
+        private volatile long sendStartedAt = NOT_SENDING;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private void offer(Event event) {
+            if (!buffer.offer(event)) {
+                dropped.incrementAndGet();
+                droppedEvents.increment();
+            }
+            if (draining.compareAndSet(false, true)) {
+                dispatcher.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                do {
+                    // at most a buffer of events per run, so that a busy subscriber does not hold the thread
+                    for (int i = 0; i < bufferSize; i++) {
+                        var event = buffer.poll();
+                        if (event == null) {
+                            break;
+                        }
+                        send(SseEmitter.event()
+                                .id(Long.toString(event.getId()))
+                                .name(event.getName())
+                                .data(event.getJson(), MediaType.APPLICATION_JSON));
+                    }
+
+                    if (!buffer.isEmpty()) {
+                        dispatcher.execute(this::drain);
+                        return;
+                    }
+
+                    // the dropped events came after the buffered ones
+                    var overflow = dropped.getAndSet(0);
+                    if (overflow > 0) {
+                        send(SseEmitter.event().name(OVERFLOW).data(overflow));
+                    }
+                    draining.set(false);
+                } while ((!buffer.isEmpty() || dropped.get() > 0) && draining.compareAndSet(false, true));
+            } catch (IOException | IllegalStateException e) {
+                // the connection is closed or broken, the subscriber stops receiving events
+                log.debug("Live feed subscriber disconnected: {}", e.getMessage());
+                subscribers.remove(this);
+                buffer.clear();
+            }
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) throws IOException {
+            sendStartedAt = System.nanoTime();
+            try {
+                emitter.send(event);
+            } finally {
+                sendStartedAt = NOT_SENDING;
+            }
+        }
+
+        private void close(Throwable failure) {
+            subscribers.remove(this);
+            buffer.clear();
+            emitter.completeWithError(failure);
+        }
+    }
+}
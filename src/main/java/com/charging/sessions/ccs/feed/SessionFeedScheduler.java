@@ -0,0 +1,41 @@
+package com.charging.sessions.ccs.feed;
+
+import com.charging.sessions.ccs.service.ChargingSessionService;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.IntervalTask;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically pushes the summary to the live feed subscribers when it changed, so that they do not poll it, and
+ * closes the subscribers whose send stalled
+ */
+@Component
+public class SessionFeedScheduler implements SchedulingConfigurer {
+
+    private final SessionFeed sessionFeed;
+
+    private final ChargingSessionService chargingSessionService;
+
+    private final FeedProperties properties;
+
+    public SessionFeedScheduler(SessionFeed sessionFeed, ChargingSessionService chargingSessionService,
+                                FeedProperties properties) {
+        this.sessionFeed = sessionFeed;
+        this.chargingSessionService = chargingSessionService;
+        this.properties = properties;
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
+        var interval = properties.getSummaryInterval().toMillis();
+        taskRegistrar.addFixedDelayTask(new IntervalTask(this::publishSummary, interval, interval));
+        var stallCheckInterval = Math.max(properties.getSendTimeout().toMillis() / 2, 1);
+        taskRegistrar.addFixedDelayTask(new IntervalTask(sessionFeed::closeStalledSubscribers, stallCheckInterval,
+                stallCheckInterval));
+    }
+
+    void publishSummary() {
+        sessionFeed.publishSummary(chargingSessionService::fetchSessionsSummary);
+    }
+}
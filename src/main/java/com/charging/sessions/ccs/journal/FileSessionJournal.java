@@ -0,0 +1,751 @@
+package com.charging.sessions.ccs.journal;
+
+import com.charging.sessions.ccs.model.ChargingSession;
+import com.charging.sessions.ccs.model.StationDictionary;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * {@link SessionJournal} writing compact binary records to segmented log files.
+ * <p>
+ * Records are framed as {@code [payload length][CRC32 of the payload][payload]}, so a torn write at the tail
+ * of the log is detected and truncated on replay. A single writer thread drains the appended records and writes
+ * them in batches (group commit), forcing them to disk according to the configured {@link FsyncPolicy}.
+ * <p>
+ * Station ids are dictionary encoded: a session record holds the code of its station and each file defines
+ * a station code once, before its first use, so every file can be replayed on its own.
+ * <p>
+ * A snapshot starts a new log segment, writes an image of the stored sessions and deletes the older segments,
+ * so that a replay only reads the latest snapshot and the segments written after it.
+ */
+@Slf4j
+public class FileSessionJournal implements SessionJournal, Closeable {
+
+    private static final String SEGMENT_PREFIX = "sessions-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final Pattern SEQUENCE = Pattern.compile("(\\d{19})");
+
+    private static final byte START_RECORD = 1;
+    private static final byte STOP_RECORD = 2;
+    private static final byte SESSION_RECORD = 3;
+    private static final byte SNAPSHOT_END_RECORD = 4;
+    private static final byte STATION_RECORD = 5;
+
+    private static final int FRAME_HEADER_SIZE = Integer.BYTES * 2;
+    private static final int MAX_STATION_ID_LENGTH = 0xFFFF;
+    private static final int MAX_PAYLOAD_SIZE = 1 + Integer.BYTES + Short.BYTES + MAX_STATION_ID_LENGTH;
+    private static final int MAX_SESSION_FRAME_SIZE = FRAME_HEADER_SIZE + 1 + Long.BYTES * 4 + Integer.BYTES;
+
+    /**
+     * Room for a session record and the definition of its station
+     */
+    private static final int MAX_RECORD_SIZE = FRAME_HEADER_SIZE + MAX_PAYLOAD_SIZE + MAX_SESSION_FRAME_SIZE;
+    private static final int BUFFER_SIZE = MAX_RECORD_SIZE * 2;
+    private static final int COMPLETION_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+
+    private final Path directory;
+
+    private final FsyncPolicy fsyncPolicy;
+
+    private final long fsyncIntervalNanos;
+
+    private final int maxBatchSize;
+
+    private final BlockingQueue<PendingRecord> pendingRecords = new LinkedBlockingQueue<>();
+
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * The codes of the journaled station ids
+     */
+    private final StationDictionary stations = new StationDictionary();
+
+    /**
+     * The station codes defined in the segment written by the writer thread
+     */
+    private final BitSet segmentStations = new BitSet();
+
+    private volatile FileChannel channel;
+
+    /**
+     * The sequence number of the segment written by the writer thread
+     */
+    private long segment;
+
+    private Thread writer;
+
+    /**
+     * Completes the futures of the written records, so that the stages depending on them never run on the writer thread
+     */
+    private final ExecutorService completionExecutor = Executors.newFixedThreadPool(COMPLETION_THREADS, runnable -> {
+        var thread = new Thread(runnable, "session-journal-completion");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public FileSessionJournal(JournalProperties properties) {
+        this.directory = properties.getDirectory();
+        this.fsyncPolicy = properties.getFsyncPolicy();
+        this.fsyncIntervalNanos = properties.getFsyncInterval().toNanos();
+        this.maxBatchSize = properties.getMaxBatchSize();
+    }
+
+    @Override
+    public void appendStart(ChargingSession session) {
+        append(new PendingRecord(START_RECORD, session.getId(), session.getStartedAt().getTime(),
+                stationCode(session.getStationId()), waitFuture()));
+    }
+
+    @Override
+    public void appendStop(ChargingSession session) {
+        append(new PendingRecord(STOP_RECORD, session.getId(), session.getStoppedAt().getTime(), 0, waitFuture()));
+    }
+
+    /**
+     * Enqueue the records of all the sessions before waiting for any of them, so they are written in the same batches
+     */
+    @Override
+    public void appendStarts(List<ChargingSession> sessions) {
+        join(appendStartsAsync(sessions));
+    }
+
+    @Override
+    public void appendStops(List<ChargingSession> sessions) {
+        join(appendStopsAsync(sessions));
+    }
+
+    @Override
+    public CompletableFuture<Void> appendStartsAsync(List<ChargingSession> sessions) {
+        var records = new ArrayList<PendingRecord>(sessions.size());
+        for (var session : sessions) {
+            records.add(new PendingRecord(START_RECORD, session.getId(), session.getStartedAt().getTime(),
+                    stationCode(session.getStationId()), waitFuture()));
+        }
+        return enqueue(records);
+    }
+
+    @Override
+    public CompletableFuture<Void> appendStopsAsync(List<ChargingSession> sessions) {
+        var records = new ArrayList<PendingRecord>(sessions.size());
+        for (var session : sessions) {
+            records.add(new PendingRecord(STOP_RECORD, session.getId(), session.getStoppedAt().getTime(), 0, waitFuture()));
+        }
+        return enqueue(records);
+    }
+
+    /**
+     * Replay the latest snapshot and the log segments written after it, then open the last segment for appending.
+     * Records after the last valid one of the last segment are truncated
+     */
+    @Override
+    public synchronized void replay(ReplayHandler handler) {
+        if (channel != null) {
+            throw new IllegalStateException("The session journal is already open");
+        }
+
+        try {
+            Files.createDirectories(directory);
+            for (var temporary : listFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX + TEMPORARY_SUFFIX)) {
+                Files.delete(temporary);
+            }
+
+            var startTime = System.nanoTime();
+            var stats = new ReplayStats();
+            var snapshots = listSequences(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+            var firstSegment = snapshots.isEmpty() ? 0 : snapshots.last();
+            if (!snapshots.isEmpty()) {
+                loadSnapshot(snapshotFile(firstSegment), handler, stats);
+            }
+            deleteBefore(firstSegment);
+
+            var segments = listSequences(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+            long validLength = 0;
+            for (var sequence : segments) {
+                var file = segmentFile(sequence);
+                validLength = readFrames(file, handler, stats);
+                // the tail of the last segment may be torn, an invalid record before it means lost records
+                var invalidLength = Files.size(file) - validLength;
+                if (invalidLength > 0 && sequence != segments.last()) {
+                    log.warn("Skipped {} bytes after an invalid record of the session journal segment {}",
+                            invalidLength, file);
+                    stats.skippedBytes += invalidLength;
+                }
+            }
+            logReplay(stats, startTime);
+
+            segment = segments.isEmpty() ? firstSegment : segments.last();
+            var logChannel = openSegment(segmentFile(segment), CREATE, WRITE);
+            if (logChannel.size() > validLength) {
+                log.warn("Truncating {} invalid bytes at the end of the session journal", logChannel.size() - validLength);
+                logChannel.truncate(validLength);
+            }
+            logChannel.position(validLength);
+            channel = logChannel;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the session journal in " + directory, e);
+        }
+
+        writer = new Thread(this::writeLoop, "session-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Start a new log segment, write the sessions to a snapshot and delete the segments and snapshots it replaces.
+     * The sessions are read after the new segment is started, so every record of the older segments is part of them.
+     * Records of the new segment may already be part of the snapshot as well, the replay handler applies them again
+     */
+    @Override
+    public synchronized void snapshot(Supplier<? extends Iterable<ChargingSession>> sessions) {
+        var startTime = System.nanoTime();
+        var rolled = new CompletableFuture<Long>();
+        append(new PendingRecord(PendingRecord.ROLL, null, 0, 0, rolled));
+        var sequence = rolled.join();
+
+        var file = snapshotFile(sequence);
+        var temporary = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+        long count = 0;
+        try {
+            try (var snapshotChannel = FileChannel.open(temporary, CREATE, TRUNCATE_EXISTING, WRITE)) {
+                var buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                var snapshotCrc = new CRC32();
+                var snapshotStations = new BitSet();
+                for (var session : sessions.get()) {
+                    if (buffer.remaining() < MAX_RECORD_SIZE) {
+                        write(snapshotChannel, buffer);
+                    }
+                    var code = stationCode(session.getStationId());
+                    defineStation(buffer, snapshotCrc, snapshotStations, code);
+                    encodeSession(buffer, snapshotCrc, session, code);
+                    count++;
+                }
+
+                var frameStart = beginFrame(buffer);
+                buffer.put(SNAPSHOT_END_RECORD).putLong(count);
+                endFrame(buffer, snapshotCrc, frameStart);
+                write(snapshotChannel, buffer);
+                snapshotChannel.force(true);
+            }
+
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+            deleteBefore(sequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write the session snapshot " + file, e);
+        }
+
+        log.info("Wrote a snapshot of {} sessions in {} ms, replay starts at segment {}",
+                count, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), sequence);
+    }
+
+    /**
+     * Write the records still pending, force them to disk and close the log file
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+
+        pendingRecords.add(new PendingRecord(PendingRecord.CLOSE, null, 0, 0, null));
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        completionExecutor.shutdown();
+        channel.force(false);
+        channel.close();
+    }
+
+    /**
+     * Find the code of a station id, checking that a new station id fits in a station record
+     */
+    private int stationCode(String stationId) {
+        var code = stations.find(stationId);
+        if (code != 0) {
+            return code;
+        }
+        if (stationId.getBytes(StandardCharsets.UTF_8).length > MAX_STATION_ID_LENGTH) {
+            throw new IllegalArgumentException("Station id too long to be journaled");
+        }
+        return stations.codeOf(stationId);
+    }
+
+    private void append(PendingRecord record) {
+        if (channel == null) {
+            openWithoutReplay();
+        }
+
+        pendingRecords.add(record);
+        if (record.written != null) {
+            try {
+                record.written.join();
+            } catch (CompletionException e) {
+                throw (RuntimeException) e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Enqueue records without waiting for them
+     *
+     * @return completed once every record is written according to the fsync policy
+     */
+    private CompletableFuture<Void> enqueue(List<PendingRecord> records) {
+        if (channel == null) {
+            openWithoutReplay();
+        }
+
+        pendingRecords.addAll(records);
+        var written = records.stream()
+                .map(record -> record.written)
+                .filter(Objects::nonNull)
+                .toArray(CompletableFuture[]::new);
+        return written.length == 0 ? CompletableFuture.completedFuture(null) : CompletableFuture.allOf(written);
+    }
+
+    private static void join(CompletableFuture<Void> written) {
+        try {
+            written.join();
+        } catch (CompletionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    private synchronized void openWithoutReplay() {
+        if (channel == null) {
+            replay(NO_REPLAY);
+        }
+    }
+
+    /**
+     * Requests only wait for their records when every batch is forced to disk
+     */
+    private CompletableFuture<Long> waitFuture() {
+        return fsyncPolicy == FsyncPolicy.ALWAYS ? new CompletableFuture<>() : null;
+    }
+
+    private void loadSnapshot(Path file, ReplayHandler handler, ReplayStats stats) throws IOException {
+        readFrames(file, handler, stats);
+        if (!stats.snapshotComplete) {
+            throw new IllegalStateException("The session snapshot " + file + " is incomplete");
+        }
+    }
+
+    /**
+     * Apply the valid records of a log or snapshot file and return the length of the valid records
+     */
+    private static long readFrames(Path file, ReplayHandler handler, ReplayStats stats) throws IOException {
+        long validLength = 0;
+        var payload = new byte[MAX_PAYLOAD_SIZE];
+        var readCrc = new CRC32();
+        var fileStations = new HashMap<Integer, String>();
+
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            while (true) {
+                var length = input.readInt();
+                var checksum = input.readInt();
+                if (length <= 0 || length > MAX_PAYLOAD_SIZE) {
+                    break;
+                }
+                input.readFully(payload, 0, length);
+
+                readCrc.reset();
+                readCrc.update(payload, 0, length);
+                if ((int) readCrc.getValue() != checksum) {
+                    break;
+                }
+
+                applyRecord(ByteBuffer.wrap(payload, 0, length), fileStations, handler, stats);
+                validLength += FRAME_HEADER_SIZE + length;
+                stats.bytes += FRAME_HEADER_SIZE + length;
+            }
+        } catch (EOFException e) {
+            // a record was not completely written, it is truncated with the rest of the tail
+        }
+        return validLength;
+    }
+
+    private static void applyRecord(ByteBuffer record, Map<Integer, String> fileStations, ReplayHandler handler,
+                                    ReplayStats stats) {
+        var type = record.get();
+        if (type == SNAPSHOT_END_RECORD) {
+            stats.snapshotComplete = record.getLong() == stats.snapshotSessions;
+            return;
+        }
+        if (type == STATION_RECORD) {
+            var code = record.getInt();
+            var stationId = new byte[Short.toUnsignedInt(record.getShort())];
+            record.get(stationId);
+            fileStations.put(code, new String(stationId, StandardCharsets.UTF_8));
+            return;
+        }
+
+        var sessionId = new UUID(record.getLong(), record.getLong());
+        var time = new Date(record.getLong());
+        if (type == START_RECORD) {
+            handler.started(sessionId, readStationId(record, fileStations), time);
+            stats.records++;
+        } else if (type == STOP_RECORD) {
+            handler.stopped(sessionId, time);
+            stats.records++;
+        } else if (type == SESSION_RECORD) {
+            var stoppedAt = record.getLong();
+            handler.started(sessionId, readStationId(record, fileStations), time);
+            if (stoppedAt != 0) {
+                handler.stopped(sessionId, new Date(stoppedAt));
+            }
+            stats.snapshotSessions++;
+        } else {
+            throw new IllegalStateException("Unknown session journal record type: " + type);
+        }
+    }
+
+    private static String readStationId(ByteBuffer record, Map<Integer, String> fileStations) {
+        var code = record.getInt();
+        var stationId = fileStations.get(code);
+        if (stationId == null) {
+            throw new IllegalStateException("Undefined station code in the session journal: " + code);
+        }
+        return stationId;
+    }
+
+    private static void logReplay(ReplayStats stats, long startTime) {
+        var elapsedMillis = Math.max(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), 1);
+        log.info("Replayed {} snapshot sessions and {} session journal records ({} bytes, {} bytes skipped) in {} ms, "
+                        + "{} records/s", stats.snapshotSessions, stats.records, stats.bytes, stats.skippedBytes,
+                elapsedMillis, (stats.snapshotSessions + stats.records) * 1000 / elapsedMillis);
+    }
+
+    private void writeLoop() {
+        var batch = new ArrayList<PendingRecord>(maxBatchSize);
+        var lastForce = System.nanoTime();
+        var unforced = false;
+        var closed = false;
+
+        while (!closed) {
+            try {
+                var first = fsyncPolicy == FsyncPolicy.INTERVAL
+                        ? pendingRecords.poll(fsyncIntervalNanos, TimeUnit.NANOSECONDS)
+                        : pendingRecords.take();
+                if (first != null) {
+                    batch.add(first);
+                    pendingRecords.drainTo(batch, maxBatchSize - 1);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            // the records already forced to a rolled segment are kept on a failure, the others are cut back to validLength
+            var committed = 0;
+            var validLength = -1L;
+            try {
+                validLength = channel.position();
+                writeBuffer.clear();
+                for (int i = 0; i < batch.size(); i++) {
+                    var record = batch.get(i);
+                    if (record.type == PendingRecord.CLOSE) {
+                        closed = true;
+                    } else if (record.type == PendingRecord.ROLL) {
+                        write(channel, writeBuffer);
+                        var sequence = rollSegment();
+                        completeAll(batch.subList(committed, i), null);
+                        record.complete(sequence, null);
+                        committed = i + 1;
+                        validLength = 0;
+                        unforced = false;
+                    } else {
+                        if (writeBuffer.remaining() < MAX_RECORD_SIZE) {
+                            write(channel, writeBuffer);
+                        }
+                        encodeRecord(record);
+                        unforced = true;
+                    }
+                }
+                write(channel, writeBuffer);
+
+                var now = System.nanoTime();
+                if (unforced && (fsyncPolicy == FsyncPolicy.ALWAYS
+                        || fsyncPolicy == FsyncPolicy.INTERVAL && now - lastForce >= fsyncIntervalNanos)) {
+                    channel.force(false);
+                    lastForce = now;
+                    unforced = false;
+                }
+                completeAll(batch, null);
+            } catch (IOException e) {
+                log.error("Failed to write {} session journal records", batch.size() - committed, e);
+                discardFailedWrite(validLength);
+                completeAll(batch.subList(committed, batch.size()), new UncheckedIOException(e));
+            }
+            batch.clear();
+        }
+    }
+
+    private void completeAll(List<PendingRecord> batch, RuntimeException failure) {
+        var waiting = batch.stream()
+                .filter(record -> record.written != null && !record.written.isDone())
+                .collect(Collectors.toList());
+        if (!waiting.isEmpty()) {
+            completionExecutor.execute(() -> waiting.forEach(record -> record.complete(null, failure)));
+        }
+    }
+
+    /**
+     * Cut the current segment back to the end of the records written before the failed batch, so that no record of
+     * the failed batch is replayed and the next records are not written after a partial one. If the segment cannot be
+     * cut, the next records are written to a new segment instead
+     *
+     * @param validLength the end of the records written before the failed batch, or -1 if unknown
+     */
+    private void discardFailedWrite(long validLength) {
+        // the station definitions of the failed batch may be cut, the next records define their stations again
+        segmentStations.clear();
+        try {
+            if (validLength < 0) {
+                throw new IOException("Unknown end of the session journal records");
+            }
+            channel.truncate(validLength);
+            channel.position(validLength);
+            return;
+        } catch (IOException e) {
+            log.error("Failed to cut the session journal segment {} back to {} bytes, continuing in a new segment",
+                    segment, validLength, e);
+        }
+
+        try {
+            var nextChannel = openSegment(segmentFile(segment + 1), CREATE_NEW, WRITE);
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close the session journal segment {}", segment, e);
+            }
+            channel = nextChannel;
+            segment++;
+        } catch (IOException e) {
+            log.error("Failed to start a new session journal segment after {}", segment, e);
+        }
+    }
+
+    /**
+     * Open a log segment, overridden by the tests to inject write failures
+     */
+    FileChannel openSegment(Path file, OpenOption... options) throws IOException {
+        return FileChannel.open(file, options);
+    }
+
+    /**
+     * Force the current segment to disk and continue writing to a new one
+     */
+    private long rollSegment() throws IOException {
+        var nextChannel = openSegment(segmentFile(segment + 1), CREATE_NEW, WRITE);
+        channel.force(false);
+        channel.close();
+        channel = nextChannel;
+        segmentStations.clear();
+        return ++segment;
+    }
+
+    private void encodeRecord(PendingRecord record) {
+        if (record.type == START_RECORD) {
+            defineStation(writeBuffer, crc, segmentStations, record.stationCode);
+        }
+
+        var frameStart = beginFrame(writeBuffer);
+        writeBuffer.put(record.type)
+                .putLong(record.sessionId.getMostSignificantBits())
+                .putLong(record.sessionId.getLeastSignificantBits())
+                .putLong(record.time);
+        if (record.type == START_RECORD) {
+            writeBuffer.putInt(record.stationCode);
+        }
+        endFrame(writeBuffer, crc, frameStart);
+    }
+
+    private static void encodeSession(ByteBuffer buffer, CRC32 crc, ChargingSession session, int stationCode) {
+        var frameStart = beginFrame(buffer);
+        buffer.put(SESSION_RECORD)
+                .putLong(session.getId().getMostSignificantBits())
+                .putLong(session.getId().getLeastSignificantBits())
+                .putLong(session.getStartedAt().getTime())
+                .putLong(session.getStoppedAt() != null ? session.getStoppedAt().getTime() : 0)
+                .putInt(stationCode);
+        endFrame(buffer, crc, frameStart);
+    }
+
+    /**
+     * Write the station record of a code, unless it is already defined in the file
+     */
+    private void defineStation(ByteBuffer buffer, CRC32 crc, BitSet definedStations, int stationCode) {
+        if (definedStations.get(stationCode)) {
+            return;
+        }
+
+        var stationId = stations.stationId(stationCode).getBytes(StandardCharsets.UTF_8);
+        var frameStart = beginFrame(buffer);
+        buffer.put(STATION_RECORD)
+                .putInt(stationCode)
+                .putShort((short) stationId.length)
+                .put(stationId);
+        endFrame(buffer, crc, frameStart);
+        definedStations.set(stationCode);
+    }
+
+    private static int beginFrame(ByteBuffer buffer) {
+        var frameStart = buffer.position();
+        buffer.position(frameStart + FRAME_HEADER_SIZE);
+        return frameStart;
+    }
+
+    private static void endFrame(ByteBuffer buffer, CRC32 crc, int frameStart) {
+        var frameEnd = buffer.position();
+        crc.reset();
+        crc.update(buffer.duplicate().position(frameStart + FRAME_HEADER_SIZE).limit(frameEnd));
+        buffer.putInt(frameStart, frameEnd - frameStart - FRAME_HEADER_SIZE)
+                .putInt(frameStart + Integer.BYTES, (int) crc.getValue());
+    }
+
+    private static void write(FileChannel fileChannel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            fileChannel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Delete the segments and snapshots replaced by the snapshot of the given sequence
+     */
+    private void deleteBefore(long sequence) throws IOException {
+        for (var older : listSequences(SEGMENT_PREFIX, SEGMENT_SUFFIX).headSet(sequence)) {
+            Files.deleteIfExists(segmentFile(older));
+        }
+        for (var older : listSequences(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).headSet(sequence)) {
+            Files.deleteIfExists(snapshotFile(older));
+        }
+    }
+
+    private TreeSet<Long> listSequences(String prefix, String suffix) throws IOException {
+        return listFiles(prefix, suffix).stream()
+                .map(file -> file.getFileName().toString())
+                .map(name -> name.substring(prefix.length(), name.length() - suffix.length()))
+                .filter(sequence -> SEQUENCE.matcher(sequence).matches())
+                .map(Long::valueOf)
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    private List<Path> listFiles(String prefix, String suffix) throws IOException {
+        try (var files = Files.list(directory)) {
+            return files
+                    .filter(file -> file.getFileName().toString().startsWith(prefix))
+                    .filter(file -> file.getFileName().toString().endsWith(suffix))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path segmentFile(long sequence) {
+        return directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+
+    private Path snapshotFile(long sequence) {
+        return directory.resolve(String.format("%s%019d%s", SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX));
+    }
+
+    private static final ReplayHandler NO_REPLAY = new ReplayHandler() {
+        @Override
+        public void started(UUID sessionId, String stationId, Date startedAt) {
+        }
+
+        @Override
+        public void stopped(UUID sessionId, Date stoppedAt) {
+        }
+    };
+
+    private static class ReplayStats {
+
+        private long records;
+
+        private long snapshotSessions;
+
+        private long bytes;
+
+        /**
+         * The bytes after an invalid record of a segment other than the last one
+         */
+        private long skippedBytes;
+
+        private boolean snapshotComplete;
+    }
+
+    private static class PendingRecord {
+
+        /**
+         * Starts a new log segment, completed with its sequence number
+         */
+        private static final byte ROLL = -1;
+
+        /**
+         * Marks the end of the appended records when the journal is closed
+         */
+        private static final byte CLOSE = -2;
+
+        private final byte type;
+
+        private final UUID sessionId;
+
+        private final long time;
+
+        private final int stationCode;
+
+        /**
+         * Completed once the record is written, {@code null} when the appending request does not wait for it
+         */
+        private final CompletableFuture<Long> written;
+
+        PendingRecord(byte type, UUID sessionId, long time, int stationCode, CompletableFuture<Long> written) {
+            this.type = type;
+            this.sessionId = sessionId;
+            this.time = time;
+            this.stationCode = stationCode;
+            this.written = written;
+        }
+
+        void complete(Long result, RuntimeException failure) {
+            if (written == null) {
+                return;
+            }
+            if (failure == null) {
+                written.complete(result);
+            } else {
+                written.completeExceptionally(failure);
+            }
+        }
+    }
+}
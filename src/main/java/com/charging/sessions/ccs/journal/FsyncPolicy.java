@@ -0,0 +1,19 @@
+package com.charging.sessions.ccs.journal;
+
+public enum FsyncPolicy {
+
+    /**
+     * Every batch of records is forced to disk before the requests that appended them complete
+     */
+    ALWAYS,
+
+    /**
+     * Records are forced to disk at most once per configured interval, requests do not wait for the disk
+     */
+    INTERVAL,
+
+    /**
+     * Records are written to the file and the operating system decides when they reach the disk
+     */
+    NEVER
+}
@@ -0,0 +1,15 @@
+package com.charging.sessions.ccs.journal;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(JournalProperties.class)
+public class JournalConfiguration {
+
+    @Bean
+    public SessionJournal sessionJournal(JournalProperties properties) {
+        return properties.isEnabled() ? new FileSessionJournal(properties) : SessionJournal.NONE;
+    }
+}
@@ -0,0 +1,42 @@
+package com.charging.sessions.ccs.journal;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "ccs.persistence")
+public class JournalProperties {
+
+    /**
+     * Whether the charging sessions are journaled to disk and recovered on startup
+     */
+    private boolean enabled = false;
+
+    /**
+     * The directory of the journal files
+     */
+    private Path directory = Path.of("data");
+
+    /**
+     * When the journaled records are forced to disk
+     */
+    private FsyncPolicy fsyncPolicy = FsyncPolicy.ALWAYS;
+
+    /**
+     * The maximum time between two forces to disk with the {@link FsyncPolicy#INTERVAL} policy
+     */
+    private Duration fsyncInterval = Duration.ofMillis(100);
+
+    /**
+     * The maximum number of records written to disk in one group commit
+     */
+    private int maxBatchSize = 1024;
+
+    /**
+     * The delay between two snapshots of the stored sessions, after which the older log segments are deleted
+     */
+    private Duration snapshotInterval = Duration.ofMinutes(10);
+}
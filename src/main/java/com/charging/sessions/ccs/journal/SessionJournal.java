@@ -0,0 +1,137 @@
+package com.charging.sessions.ccs.journal;
+
+import com.charging.sessions.ccs.model.ChargingSession;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Append-only log of the charging session state changes, replayed on startup to rebuild the in-memory store
+ */
+public interface SessionJournal {
+
+    /**
+     * Journal used when persistence is disabled, nothing is written and there is nothing to replay
+     */
+    SessionJournal NONE = new SessionJournal() {
+        @Override
+        public void appendStart(ChargingSession session) {
+        }
+
+        @Override
+        public void appendStop(ChargingSession session) {
+        }
+
+        @Override
+        public void replay(ReplayHandler handler) {
+        }
+
+        @Override
+        public void snapshot(Supplier<? extends Iterable<ChargingSession>> sessions) {
+        }
+    };
+
+    /**
+     * Append a record for a started charging session
+     *
+     * @param session the started charging session
+     */
+    void appendStart(ChargingSession session);
+
+    /**
+     * Append a record for a stopped charging session
+     *
+     * @param session the stopped charging session
+     */
+    void appendStop(ChargingSession session);
+
+    /**
+     * Append the records of many started charging sessions, in order, waiting for them at most once
+     *
+     * @param sessions the started charging sessions
+     */
+    default void appendStarts(List<ChargingSession> sessions) {
+        sessions.forEach(this::appendStart);
+    }
+
+    /**
+     * Append the records of many stopped charging sessions, in order, waiting for them at most once
+     *
+     * @param sessions the stopped charging sessions
+     */
+    default void appendStops(List<ChargingSession> sessions) {
+        sessions.forEach(this::appendStop);
+    }
+
+    /**
+     * Append the records of many started charging sessions, in order, without waiting for them
+     *
+     * @param sessions the started charging sessions
+     * @return completed once the records are written as the journal would wait for them
+     */
+    default CompletableFuture<Void> appendStartsAsync(List<ChargingSession> sessions) {
+        try {
+            appendStarts(sessions);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Append the records of many stopped charging sessions, in order, without waiting for them
+     *
+     * @param sessions the stopped charging sessions
+     * @return completed once the records are written as the journal would wait for them
+     */
+    default CompletableFuture<Void> appendStopsAsync(List<ChargingSession> sessions) {
+        try {
+            appendStops(sessions);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Replay the journaled sessions, from the latest snapshot followed by the records appended after it.
+     * A record may be replayed on top of a snapshot that already contains it, and a stop record may be replayed
+     * before the start record of its session, so the handler must apply them in any order and idempotently
+     *
+     * @param handler the handler to apply the records to
+     */
+    void replay(ReplayHandler handler);
+
+    /**
+     * Write a snapshot of the stored sessions, so that the records it replaces no longer need to be replayed
+     *
+     * @param sessions supplies the stored sessions, called once every record appended before the snapshot is stored
+     */
+    void snapshot(Supplier<? extends Iterable<ChargingSession>> sessions);
+
+    /**
+     * Receives the records of a journal replay
+     */
+    interface ReplayHandler {
+
+        /**
+         * Apply a started charging session record
+         *
+         * @param sessionId the charging session id
+         * @param stationId the id of the station
+         * @param startedAt the start time of the session
+         */
+        void started(UUID sessionId, String stationId, Date startedAt);
+
+        /**
+         * Apply a stopped charging session record
+         *
+         * @param sessionId the charging session id
+         * @param stoppedAt the stop time of the session
+         */
+        void stopped(UUID sessionId, Date stoppedAt);
+    }
+}
@@ -0,0 +1,46 @@
+package com.charging.sessions.ccs.journal;
+
+import com.charging.sessions.ccs.repository.ChargingSessionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.IntervalTask;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically snapshots the stored charging sessions in the background, so that startup only replays
+ * the latest snapshot and the log written after it
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "ccs.persistence", name = "enabled", havingValue = "true")
+public class SessionSnapshotScheduler implements SchedulingConfigurer {
+
+    private final SessionJournal sessionJournal;
+
+    private final ChargingSessionRepository sessionRepository;
+
+    private final JournalProperties properties;
+
+    public SessionSnapshotScheduler(SessionJournal sessionJournal, ChargingSessionRepository sessionRepository,
+                                    JournalProperties properties) {
+        this.sessionJournal = sessionJournal;
+        this.sessionRepository = sessionRepository;
+        this.properties = properties;
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
+        var interval = properties.getSnapshotInterval().toMillis();
+        taskRegistrar.addFixedDelayTask(new IntervalTask(this::snapshot, interval, interval));
+    }
+
+    void snapshot() {
+        try {
+            sessionJournal.snapshot(sessionRepository::findAllSessions);
+        } catch (RuntimeException e) {
+            log.error("Failed to snapshot the charging sessions", e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.charging.sessions.ccs.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Keep about one out of {@code sampleEvery} log events below {@code WARN} of the loggers under {@code loggerPrefix}.
+ * <p>
+ * The decision is taken before the message is formatted or queued, so a dropped event costs a random draw.
+ * Warnings and errors are always kept, and so are the {@code isXxxEnabled()} checks, which have no message.
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    private String loggerPrefix = "";
+
+    private int sampleEvery = 1;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (sampleEvery <= 1 || format == null || level.isGreaterOrEqual(Level.WARN)
+                || !logger.getName().startsWith(loggerPrefix)) {
+            return FilterReply.NEUTRAL;
+        }
+        return ThreadLocalRandom.current().nextInt(sampleEvery) == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    public void setLoggerPrefix(String loggerPrefix) {
+        this.loggerPrefix = loggerPrefix;
+    }
+
+    public void setSampleEvery(int sampleEvery) {
+        this.sampleEvery = sampleEvery;
+    }
+}
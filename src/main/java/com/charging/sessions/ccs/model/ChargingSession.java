@@ -1,16 +1,20 @@
 package com.charging.sessions.ccs.model;
 
 import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.Value;
 
 import java.util.Date;
 import java.util.Objects;
 import java.util.UUID;
 
-@Data
+import static com.charging.sessions.ccs.model.SessionStatus.FINISHED;
+
+/**
+ * Immutable charging session entity. State transitions create a new instance, so a reader
+ * always sees a consistent session, e.g. never a {@link SessionStatus#FINISHED} session without a stop time
+ */
+@Value
 @AllArgsConstructor
-@NoArgsConstructor
 public class ChargingSession {
 
     private UUID id;
@@ -23,6 +27,15 @@ public class ChargingSession {
 
     private SessionStatus status;
 
+    /**
+     * Create a stopped copy of this charging session
+     *
+     * @param stoppedAt the stop time of the session
+     */
+    public ChargingSession stop(Date stoppedAt) {
+        return new ChargingSession(id, stationId, startedAt, stoppedAt, FINISHED);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -36,4 +49,3 @@ public class ChargingSession {
         return Objects.hash(id);
     }
 }
-
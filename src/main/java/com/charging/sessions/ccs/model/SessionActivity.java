@@ -0,0 +1,19 @@
+package com.charging.sessions.ccs.model;
+
+import lombok.Value;
+
+/**
+ * The number of charging sessions started and stopped during a period
+ */
+@Value
+public class SessionActivity {
+
+    /**
+     * The start of the period in epoch millis
+     */
+    private long periodStart;
+
+    private long startedCount;
+
+    private long stoppedCount;
+}
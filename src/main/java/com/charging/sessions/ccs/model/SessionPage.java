@@ -0,0 +1,19 @@
+package com.charging.sessions.ccs.model;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * A page of charging sessions in insertion order, with the stored position the next page starts from
+ */
+@Value
+public class SessionPage {
+
+    private List<ChargingSession> sessions;
+
+    /**
+     * The position following the last session of the page, {@code -1} when no session is stored after it
+     */
+    private int nextPosition;
+}
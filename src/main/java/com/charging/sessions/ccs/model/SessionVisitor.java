@@ -0,0 +1,19 @@
+package com.charging.sessions.ccs.model;
+
+/**
+ * Receives the fields of stored charging sessions as primitives, so that visiting a session allocates nothing
+ */
+@FunctionalInterface
+public interface SessionVisitor {
+
+    /**
+     * Visit a charging session
+     *
+     * @param idHi      the most significant bits of the session id
+     * @param idLo      the least significant bits of the session id
+     * @param stationId the station id
+     * @param startedAt the start time in epoch milliseconds
+     * @param stoppedAt the stop time in epoch milliseconds, {@code 0} while the session is in progress
+     */
+    void visit(long idHi, long idLo, String stationId, long startedAt, long stoppedAt);
+}
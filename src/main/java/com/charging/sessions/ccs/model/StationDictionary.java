@@ -0,0 +1,73 @@
+package com.charging.sessions.ccs.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Concurrent dictionary of the station ids, mapping each station to a small integer code.
+ * <p>
+ * Codes are assigned in order starting from {@code 1}, {@code 0} never denotes a station. Lookups never lock,
+ * only the assignment of a code to a new station is serialized. Each station id is kept once, so the sessions
+ * of a station share the same {@link String} instance and can be grouped and compared by code.
+ */
+public class StationDictionary {
+
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+
+    private volatile String[] stationIds = new String[64];
+
+    /**
+     * Find the code of a station, assigning the next free one to a new station
+     */
+    public int codeOf(String stationId) {
+        var code = codes.get(stationId);
+        return code != null ? code : assign(stationId);
+    }
+
+    /**
+     * Find the code of a station
+     *
+     * @return the code, or {@code 0} if the station is unknown
+     */
+    public int find(String stationId) {
+        return codes.getOrDefault(stationId, 0);
+    }
+
+    /**
+     * The station id of a code returned by this dictionary
+     */
+    public String stationId(int code) {
+        return stationIds[code];
+    }
+
+    /**
+     * The number of stations in the dictionary, which is also the highest assigned code
+     */
+    public int size() {
+        return codes.size();
+    }
+
+    public synchronized void clear() {
+        codes.clear();
+        stationIds = new String[64];
+    }
+
+    private synchronized int assign(String stationId) {
+        var code = codes.get(stationId);
+        if (code != null) {
+            return code;
+        }
+
+        code = codes.size() + 1;
+        var current = stationIds;
+        if (code >= current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        // the station id is published before its code, so a code read from the map always resolves
+        current[code] = stationId;
+        stationIds = current;
+        codes.put(stationId, code);
+        return code;
+    }
+}
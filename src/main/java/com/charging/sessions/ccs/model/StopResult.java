@@ -0,0 +1,47 @@
+package com.charging.sessions.ccs.model;
+
+import lombok.Value;
+
+/**
+ * Result of an attempt to stop a charging session
+ */
+@Value
+public class StopResult {
+
+    private Outcome outcome;
+
+    /**
+     * The stopped session when the attempt won, the already stopped session on conflict, {@code null} if not found
+     */
+    private ChargingSession session;
+
+    public static StopResult stopped(ChargingSession session) {
+        return new StopResult(Outcome.STOPPED, session);
+    }
+
+    public static StopResult alreadyStopped(ChargingSession session) {
+        return new StopResult(Outcome.ALREADY_STOPPED, session);
+    }
+
+    public static StopResult notFound() {
+        return new StopResult(Outcome.NOT_FOUND, null);
+    }
+
+    public enum Outcome {
+
+        /**
+         * The session was in progress and has been stopped by this attempt
+         */
+        STOPPED,
+
+        /**
+         * The session had already been stopped, by this or a concurrent request
+         */
+        ALREADY_STOPPED,
+
+        /**
+         * No session exists with the given id
+         */
+        NOT_FOUND
+    }
+}
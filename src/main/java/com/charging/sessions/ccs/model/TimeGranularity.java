@@ -0,0 +1,43 @@
+package com.charging.sessions.ccs.model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Width of the periods a session summary is bucketed in. Periods are aligned to the epoch, in UTC
+ */
+public enum TimeGranularity {
+
+    /**
+     * Periods of one minute
+     */
+    MINUTE(TimeUnit.MINUTES.toMillis(1)),
+
+    /**
+     * Periods of one hour
+     */
+    HOUR(TimeUnit.HOURS.toMillis(1)),
+
+    /**
+     * Periods of one day
+     */
+    DAY(TimeUnit.DAYS.toMillis(1));
+
+    private final long millis;
+
+    TimeGranularity(long millis) {
+        this.millis = millis;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * The start of the period containing the given time
+     *
+     * @param time epoch millis
+     */
+    public long periodStart(long time) {
+        return Math.floorDiv(time, millis) * millis;
+    }
+}
@@ -0,0 +1,24 @@
+package com.charging.sessions.ccs.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChargingSessionAnalyticsPayload {
+
+    private long totalCount;
+
+    /**
+     * The number of sessions of each station, by station id
+     */
+    private Map<String, Long> stations;
+
+    private ChargingSessionDurationsPayload durations;
+
+    private ChargingSessionConcurrencyPayload concurrency;
+}
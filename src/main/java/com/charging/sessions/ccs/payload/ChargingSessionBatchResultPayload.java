@@ -0,0 +1,29 @@
+package com.charging.sessions.ccs.payload;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import static com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * Result of one item of a batch request, with the HTTP status the single item request would have returned
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(Include.NON_NULL)
+public class ChargingSessionBatchResultPayload {
+
+    private int status;
+
+    /**
+     * The requested session id when the item failed
+     */
+    @JsonSerialize(using = SessionIdSerializer.class)
+    private String id;
+
+    private ChargingSessionResponsePayload session;
+}
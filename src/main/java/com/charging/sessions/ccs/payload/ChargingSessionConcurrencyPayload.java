@@ -0,0 +1,25 @@
+package com.charging.sessions.ccs.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * The peak of the sessions in progress during a same minute
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChargingSessionConcurrencyPayload {
+
+    private long peakCount;
+
+    /**
+     * The first minute of the peak, {@code null} when there are no sessions
+     */
+    private Date peakFrom;
+
+    private Date peakTo;
+}
@@ -0,0 +1,30 @@
+package com.charging.sessions.ccs.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Statistics of the charge durations of the finished sessions, in milliseconds. The percentiles are within 0.1%
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChargingSessionDurationsPayload {
+
+    private long count;
+
+    private double averageMillis;
+
+    private long minMillis;
+
+    private long medianMillis;
+
+    private long p90Millis;
+
+    private long p95Millis;
+
+    private long p99Millis;
+
+    private long maxMillis;
+}
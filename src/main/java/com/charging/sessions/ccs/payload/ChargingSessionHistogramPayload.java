@@ -0,0 +1,22 @@
+package com.charging.sessions.ccs.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChargingSessionHistogramPayload {
+
+    private Date from;
+
+    private Date to;
+
+    private String granularity;
+
+    private List<ChargingSessionPeriodPayload> periods;
+}
@@ -0,0 +1,24 @@
+package com.charging.sessions.ccs.payload;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+import static com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(Include.NON_NULL)
+public class ChargingSessionPagePayload {
+
+    private List<ChargingSessionResponsePayload> sessions;
+
+    /**
+     * The continuation token to fetch the next page, absent on the last page
+     */
+    private String nextCursor;
+}
@@ -0,0 +1,19 @@
+package com.charging.sessions.ccs.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChargingSessionPeriodPayload {
+
+    private Date periodStart;
+
+    private long startedCount;
+
+    private long stoppedCount;
+}
@@ -1,6 +1,7 @@
 package com.charging.sessions.ccs.payload;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -16,6 +17,7 @@ import static com.fasterxml.jackson.annotation.JsonInclude.Include;
 @JsonInclude(Include.NON_NULL)
 public class ChargingSessionResponsePayload {
 
+    @JsonSerialize(using = SessionIdSerializer.class)
     private String id;
 
     private String stationId;
@@ -0,0 +1,58 @@
+package com.charging.sessions.ccs.payload;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Writes a session id as the 16 bytes of its UUID to the binary formats, and as its string to the text formats.
+ * An id that is not a UUID in its canonical form, e.g. an invalid id echoed back by a batch result, is always written
+ * as a string, so that the bytes always decode to the same string as the text formats write
+ */
+public class SessionIdSerializer extends StdSerializer<String> {
+
+    private static final int CANONICAL_LENGTH = 36;
+
+    public SessionIdSerializer() {
+        super(String.class);
+    }
+
+    @Override
+    public void serialize(String id, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        if (generator.canWriteBinaryNatively() && isCanonical(id)) {
+            var sessionId = UUID.fromString(id);
+            generator.writeBinary(ByteBuffer.allocate(16)
+                    .putLong(sessionId.getMostSignificantBits())
+                    .putLong(sessionId.getLeastSignificantBits())
+                    .array());
+        } else {
+            generator.writeString(id);
+        }
+    }
+
+    /**
+     * Whether an id is written like {@link UUID#toString()}: 8-4-4-4-12 lower case hex digits.
+     * {@link UUID#fromString(String)} also accepts shorter groups and upper case digits, which do not decode back
+     * to the same string
+     */
+    static boolean isCanonical(String id) {
+        if (id.length() != CANONICAL_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < CANONICAL_LENGTH; i++) {
+            var c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,206 @@
+package com.charging.sessions.ccs.payload;
+
+import com.charging.sessions.ccs.model.SessionStatus;
+import com.charging.sessions.ccs.model.SessionVisitor;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.util.StdDateFormat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Writes charging sessions in the layout of {@link ChargingSessionResponsePayload} straight from their fields,
+ * without creating the payloads nor the dates, ids and status strings they hold. The field names and the status
+ * values are encoded once, the ids and the timestamps are formatted into buffers reused from one session to the next.
+ * <p>
+ * Ids and timestamps are written like {@link SessionIdSerializer} and the date serializer of Jackson: to a binary
+ * format the id is its 16 bytes, and a timestamp is an epoch millisecond number when dates are written as timestamps,
+ * otherwise a string of the date format of the object mapper. The default format of Jackson, ISO-8601 in UTC, is
+ * formatted by hand, any other is used as configured. Not thread-safe, a writer serves one generator
+ */
+public class SessionPayloadWriter implements SessionVisitor {
+
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString STATION_ID = new SerializedString("stationId");
+    private static final SerializedString STARTED_AT = new SerializedString("startedAt");
+    private static final SerializedString STOPPED_AT = new SerializedString("stoppedAt");
+    private static final SerializedString STATUS = new SerializedString("status");
+    private static final SerializedString IN_PROGRESS = new SerializedString(SessionStatus.IN_PROGRESS.name());
+    private static final SerializedString FINISHED = new SerializedString(SessionStatus.FINISHED.name());
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * The first timestamp past year 9999, the dates formatted in {@link #dateChars} have 4-digit years
+     */
+    private static final long MAX_FORMATTED_TIMESTAMP = 253_402_300_800_000L;
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private final JsonGenerator generator;
+
+    private final boolean binaryIds;
+
+    private final boolean datesAsTimestamps;
+
+    /**
+     * The date format of the object mapper, a copy since a format is not thread-safe
+     */
+    private final DateFormat dateFormat;
+
+    /**
+     * Whether the date format is the default one of Jackson, which {@link #formatDate(long)} reproduces
+     */
+    private final boolean defaultDateFormat;
+
+    private final char[] idChars = new char[36];
+
+    private final byte[] idBytes = new byte[16];
+
+    /**
+     * {@code yyyy-MM-ddTHH:mm:ss.SSS+0000}, the date format of Jackson
+     */
+    private final char[] dateChars = "0000-00-00T00:00:00.000+0000".toCharArray();
+
+    /**
+     * @param generator the generator to write to
+     * @param config    the serialization config of the object mapper of the generator, choosing whether the dates
+     *                  are written as epoch milliseconds to a text format and their format otherwise. They always are
+     *                  epoch milliseconds to a binary format
+     */
+    public SessionPayloadWriter(JsonGenerator generator, SerializationConfig config) {
+        this.generator = generator;
+        this.binaryIds = generator.canWriteBinaryNatively();
+        this.datesAsTimestamps = config.isEnabled(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS) || binaryIds;
+        this.dateFormat = (DateFormat) config.getDateFormat().clone();
+        this.defaultDateFormat = isDefault(dateFormat);
+    }
+
+    /**
+     * Write a session, the {@link IOException} of the generator is thrown as an {@link UncheckedIOException}
+     */
+    @Override
+    public void visit(long idHi, long idLo, String stationId, long startedAt, long stoppedAt) {
+        try {
+            write(idHi, idLo, stationId, startedAt, stoppedAt);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write a session
+     *
+     * @param stoppedAt the stop time, {@code 0} while the session is in progress
+     */
+    public void write(long idHi, long idLo, String stationId, long startedAt, long stoppedAt) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(ID);
+        writeId(idHi, idLo);
+        generator.writeFieldName(STATION_ID);
+        generator.writeString(stationId);
+        generator.writeFieldName(STARTED_AT);
+        writeDate(startedAt);
+        if (stoppedAt != 0) {
+            generator.writeFieldName(STOPPED_AT);
+            writeDate(stoppedAt);
+        }
+        generator.writeFieldName(STATUS);
+        generator.writeString(stoppedAt == 0 ? IN_PROGRESS : FINISHED);
+        generator.writeEndObject();
+    }
+
+    private void writeId(long idHi, long idLo) throws IOException {
+        if (binaryIds) {
+            for (int i = 0; i < 8; i++) {
+                idBytes[i] = (byte) (idHi >>> (56 - 8 * i));
+                idBytes[8 + i] = (byte) (idLo >>> (56 - 8 * i));
+            }
+            generator.writeBinary(idBytes);
+            return;
+        }
+
+        // 8-4-4-4-12 lower case hex digits, as UUID.toString
+        hex(idHi >>> 32, 8, 0);
+        idChars[8] = '-';
+        hex(idHi >>> 16, 4, 9);
+        idChars[13] = '-';
+        hex(idHi, 4, 14);
+        idChars[18] = '-';
+        hex(idLo >>> 48, 4, 19);
+        idChars[23] = '-';
+        hex(idLo, 12, 24);
+        generator.writeString(idChars, 0, idChars.length);
+    }
+
+    private void hex(long value, int digits, int offset) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            idChars[i] = HEX_DIGITS[(int) value & 0xF];
+            value >>>= 4;
+        }
+    }
+
+    private void writeDate(long timestamp) throws IOException {
+        if (datesAsTimestamps) {
+            generator.writeNumber(timestamp);
+        } else if (!defaultDateFormat || timestamp < 0 || timestamp >= MAX_FORMATTED_TIMESTAMP) {
+            generator.writeString(dateFormat.format(new Date(timestamp)));
+        } else {
+            formatDate(timestamp);
+            generator.writeString(dateChars, 0, dateChars.length);
+        }
+    }
+
+    /**
+     * Whether a date format writes {@code yyyy-MM-ddTHH:mm:ss.SSS+0000} in UTC, as the default one of Jackson does
+     */
+    private static boolean isDefault(DateFormat dateFormat) {
+        if (dateFormat.getClass() != StdDateFormat.class) {
+            return false;
+        }
+        var stdDateFormat = (StdDateFormat) dateFormat;
+        // no time zone is UTC
+        return !stdDateFormat.isColonIncludedInTimeZone()
+                && (stdDateFormat.getTimeZone() == null || UTC.hasSameRules(stdDateFormat.getTimeZone()));
+    }
+
+    /**
+     * Format a timestamp of the years 1970 to 9999 into {@link #dateChars}
+     */
+    private void formatDate(long timestamp) {
+        // civil date of the epoch day, from the days since 0000-03-01 in 400-year eras
+        long days = timestamp / MILLIS_PER_DAY + 719_468;
+        long era = days / 146_097;
+        long dayOfEra = days - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        int millisOfDay = (int) (timestamp % MILLIS_PER_DAY);
+        digits(year, 4, 0);
+        digits(month, 2, 5);
+        digits(day, 2, 8);
+        digits(millisOfDay / 3_600_000, 2, 11);
+        digits(millisOfDay / 60_000 % 60, 2, 14);
+        digits(millisOfDay / 1000 % 60, 2, 17);
+        digits(millisOfDay % 1000, 3, 20);
+    }
+
+    private void digits(int value, int digits, int offset) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            dateChars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
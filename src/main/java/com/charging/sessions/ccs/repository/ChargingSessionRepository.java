@@ -1,10 +1,18 @@
 package com.charging.sessions.ccs.repository;
 
 import com.charging.sessions.ccs.model.ChargingSession;
+import com.charging.sessions.ccs.model.SessionActivity;
+import com.charging.sessions.ccs.model.SessionPage;
+import com.charging.sessions.ccs.model.SessionVisitor;
+import com.charging.sessions.ccs.model.StopResult;
+import com.charging.sessions.ccs.model.TimeGranularity;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface ChargingSessionRepository {
 
@@ -16,17 +24,127 @@ public interface ChargingSessionRepository {
     ChargingSession addNewSession(String stationId);
 
     /**
-     * Update an existing started charging session to stopped state
+     * Atomically update an existing started charging session to stopped state.
+     * When concurrent requests stop the same session exactly one of them wins, the others get a conflict
      *
-     * @param session the started charging session to be stopped
+     * @param sessionId the id of the started charging session to be stopped
      */
-    ChargingSession stopSession(ChargingSession session);
+    StopResult stopSession(UUID sessionId);
+
+    /**
+     * Save many new charging session entities in one pass
+     *
+     * @param stationIds the ids of the stations, one per session
+     * @return the new sessions in the order of the station ids
+     */
+    List<ChargingSession> addNewSessions(List<String> stationIds);
+
+    /**
+     * Stop many charging sessions in one pass, each one atomically as {@link #stopSession(UUID)} does
+     *
+     * @param sessionIds the charging session ids
+     * @return the results in the order of the session ids
+     */
+    List<StopResult> stopSessions(List<UUID> sessionIds);
+
+    /**
+     * Save a new charging session entity as {@link #addNewSession(String)} does, without waiting for the journal
+     *
+     * @param stationId the id of the station
+     * @return completed with the new session once it is journaled
+     */
+    CompletableFuture<ChargingSession> addNewSessionAsync(String stationId);
+
+    /**
+     * Stop a charging session as {@link #stopSession(UUID)} does, without waiting for the journal
+     *
+     * @param sessionId the id of the started charging session to be stopped
+     * @return completed with the result once the stop is journaled
+     */
+    CompletableFuture<StopResult> stopSessionAsync(UUID sessionId);
+
+    /**
+     * Save many new charging session entities as {@link #addNewSessions(List)} does, without waiting for the journal
+     *
+     * @param stationIds the ids of the stations, one per session
+     * @return completed with the new sessions in the order of the station ids once they are journaled
+     */
+    CompletableFuture<List<ChargingSession>> addNewSessionsAsync(List<String> stationIds);
+
+    /**
+     * Stop many charging sessions as {@link #stopSessions(List)} does, without waiting for the journal
+     *
+     * @param sessionIds the charging session ids
+     * @return completed with the results in the order of the session ids once the stops are journaled
+     */
+    CompletableFuture<List<StopResult>> stopSessionsAsync(List<UUID> sessionIds);
 
     /**
      * Find all the existing charging sessions
      */
     Set<ChargingSession> findAllSessions();
 
+    /**
+     * Visit all the existing charging sessions in insertion order, straight from the storage without creating
+     * {@link ChargingSession} instances
+     *
+     * @param visitor receives the fields of each session
+     */
+    void forEachSession(SessionVisitor visitor);
+
+    /**
+     * The end of the positions of the stored sessions, exclusive. Positions follow the insertion order and are never
+     * reused, so disjoint ranges of them can be visited in parallel with {@link #forEachSession(int, int, SessionVisitor)}
+     */
+    int sessionPositionLimit();
+
+    /**
+     * Visit the existing charging sessions stored at a range of positions, in insertion order, as
+     * {@link #forEachSession(SessionVisitor)} does
+     *
+     * @param fromPosition the first position visited
+     * @param toPosition   the end of the positions visited, exclusive
+     * @param visitor      receives the fields of each session
+     */
+    void forEachSession(int fromPosition, int toPosition, SessionVisitor visitor);
+
+    /**
+     * The modification version of the stored sessions, increased after every session is added, stopped or evicted,
+     * and after all are deleted. Read before the sessions, the sessions read are at least as recent as the version
+     */
+    long modificationVersion();
+
+    /**
+     * Find the charging sessions in progress. Only the live sessions are visited, not the finished ones
+     */
+    List<ChargingSession> findActiveSessions();
+
+    /**
+     * Find all the charging sessions of a station
+     *
+     * @param stationId the id of the station
+     */
+    List<ChargingSession> findByStationId(String stationId);
+
+    /**
+     * Find a page of charging sessions in insertion order. Pages are resumed by stored position rather than by session,
+     * so that a page still follows the previous one when the last session of the previous one was evicted since
+     *
+     * @param fromPosition the first position visited, {@code 0} for the first page or the next position of the previous
+     *                     page
+     * @param limit        the maximum number of sessions to return
+     */
+    SessionPage findSessionsFrom(int fromPosition, int limit);
+
+    /**
+     * Count the charging sessions started and stopped per period, skipping the periods without any activity
+     *
+     * @param from        the start of the range in epoch millis, the period containing it is included
+     * @param to          the end of the range in epoch millis, exclusive
+     * @param granularity the width of the periods
+     */
+    List<SessionActivity> countSessionsByPeriod(long from, long to, TimeGranularity granularity);
+
     /**
      * Find a charging session by session id
      *
@@ -34,6 +152,31 @@ public interface ChargingSessionRepository {
      */
     Optional<ChargingSession> findById(UUID sessionId);
 
+    /**
+     * Evict some of the finished charging sessions that are past the retention, oldest first. Each call visits a few
+     * stored sessions and resumes where the previous call stopped, so the retention is enforced by repeated calls
+     *
+     * @param stoppedBefore the sessions stopped before this epoch millis are evicted
+     * @param maxSessions   while more sessions are stored the oldest finished ones are evicted, {@code 0} for no limit
+     * @param limit         the maximum number of stored sessions visited
+     * @return the evicted sessions
+     */
+    List<ChargingSession> evictFinishedSessions(long stoppedBefore, long maxSessions, int limit);
+
+    /**
+     * Evict some of the finished charging sessions as {@link #evictFinishedSessions(long, long, int)} does, once they
+     * are handed over, e.g. to an archive. When the hand-over fails no session is evicted and the next call visits the
+     * same sessions again
+     *
+     * @param stoppedBefore  the sessions stopped before this epoch millis are evicted
+     * @param maxSessions    while more sessions are stored the oldest finished ones are evicted, {@code 0} for no limit
+     * @param limit          the maximum number of stored sessions visited
+     * @param beforeEviction receives the sessions about to be evicted, if any, and throws to keep them stored
+     * @return the evicted sessions
+     */
+    List<ChargingSession> evictFinishedSessions(long stoppedBefore, long maxSessions, int limit,
+                                                Consumer<List<ChargingSession>> beforeEviction);
+
     /**
      * Delete all charging sessions
      */
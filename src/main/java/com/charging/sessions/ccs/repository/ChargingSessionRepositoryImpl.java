@@ -1,9 +1,23 @@
 package com.charging.sessions.ccs.repository;
 
+import com.charging.sessions.ccs.journal.SessionJournal;
 import com.charging.sessions.ccs.model.ChargingSession;
+import com.charging.sessions.ccs.model.SessionActivity;
+import com.charging.sessions.ccs.model.SessionPage;
+import com.charging.sessions.ccs.model.SessionVisitor;
+import com.charging.sessions.ccs.model.StationDictionary;
+import com.charging.sessions.ccs.model.StopResult;
+import com.charging.sessions.ccs.model.TimeGranularity;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import javax.annotation.PostConstruct;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 import static com.charging.sessions.ccs.model.SessionStatus.FINISHED;
 import static com.charging.sessions.ccs.model.SessionStatus.IN_PROGRESS;
@@ -12,46 +26,643 @@ import static com.charging.sessions.ccs.model.SessionStatus.IN_PROGRESS;
 public class ChargingSessionRepositoryImpl implements ChargingSessionRepository {
 
     /**
-     * The {@link HashSet} to save the charging sessions
+     * The {@link SessionSlab} to save the charging sessions in fixed-width slots of primitive arrays.
+     * The {@link ChargingSession} entities returned by the repository are views of the slots created on access
      */
-    private Set<ChargingSession> chargingSessions = Collections.synchronizedSet(new HashSet<>());
+    private final SessionSlab sessions = new SessionSlab();
+
+    /**
+     * Index from session id to slot. Lookups stay constant-time regardless of the number of stored sessions
+     */
+    private final SessionIdIndex sessionIds = new SessionIdIndex();
+
+    /**
+     * The slots of the in progress sessions, so that queries on them only touch the live ones.
+     * A stopped session is removed from it and is then only kept in {@link #sessions}
+     */
+    private final Set<Integer> liveSlots = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The codes of the station ids, so that a slot stores an int instead of a reference to the station id
+     */
+    private final StationDictionary stations = new StationDictionary();
+
+    /**
+     * Secondary index of the slots by station, indexed by station code
+     */
+    private volatile SlotList[] slotsByStation = new SlotList[64];
+
+    /**
+     * Counters of the started and stopped sessions per minute, hour and day
+     */
+    private final SessionTimeIndex sessionTimes = new SessionTimeIndex();
+
+    /**
+     * The number of stored sessions, striped so that the writers do not contend on one counter
+     */
+    private final LongAdder sessionCount = new LongAdder();
+
+    /**
+     * The number of changes of the stored sessions, counted once they are visible to the readers. A single atomic
+     * counter rather than a striped one, so that a reader seeing a version also sees every change counted in it
+     */
+    private final AtomicLong modifications = new AtomicLong();
+
+    /**
+     * The first slot that may hold a session not evicted yet, only used by the evicting thread
+     */
+    private int evictionStart;
+
+    /**
+     * The slot where the next eviction pass resumes, only used by the evicting thread
+     */
+    private int evictionCursor;
+
+    /**
+     * The number of slots evicted per station code since its slot list was last compacted, only used by the evicting thread
+     */
+    private final Map<Integer, Integer> evictedByStation = new HashMap<>();
+
+    /**
+     * Read-only {@link Set} view over the stored charging sessions
+     */
+    private final Set<ChargingSession> chargingSessionsView = new SessionSetView();
+
+    private final SessionJournal sessionJournal;
+
+    private final SessionIdGenerator sessionIdGenerator;
+
+    /**
+     * Create a repository generating random session ids
+     */
+    public ChargingSessionRepositoryImpl(SessionJournal sessionJournal) {
+        this(sessionJournal, SessionIdGenerator.RANDOM);
+    }
+
+    @Autowired
+    public ChargingSessionRepositoryImpl(SessionJournal sessionJournal, SessionIdGenerator sessionIdGenerator) {
+        this.sessionJournal = sessionJournal;
+        this.sessionIdGenerator = sessionIdGenerator;
+    }
+
+    /**
+     * Rebuild the stored charging sessions from the journal before any request is served.
+     * Records are applied idempotently and a stop replayed before the start of its session is kept until the start
+     */
+    @PostConstruct
+    public void recover() {
+        var pendingStops = new HashMap<UUID, Date>();
+
+        sessionJournal.replay(new SessionJournal.ReplayHandler() {
+            @Override
+            public void started(UUID sessionId, String stationId, Date startedAt) {
+                if (findSlot(sessionId) < 0) {
+                    var slot = store(sessionId, stationId, startedAt.getTime());
+                    var stoppedAt = pendingStops.remove(sessionId);
+                    if (stoppedAt != null) {
+                        markStopped(slot, stoppedAt.getTime());
+                    }
+                }
+            }
+
+            @Override
+            public void stopped(UUID sessionId, Date stoppedAt) {
+                var slot = findSlot(sessionId);
+                if (slot < 0) {
+                    pendingStops.put(sessionId, stoppedAt);
+                } else {
+                    markStopped(slot, stoppedAt.getTime());
+                }
+            }
+        });
+    }
 
     @Override
     public ChargingSession addNewSession(String stationId) {
-        var session = new ChargingSession();
-        session.setId(UUID.randomUUID());
-        session.setStatus(IN_PROGRESS);
-        session.setStationId(stationId);
-        session.setStartedAt(new Date());
-
-        // add a new charging session in the Set of sessions
-        chargingSessions.add(session);
+        // the session is stored before it is journaled, so a snapshot taken after the record is written contains it
+        var session = storeNewSession(stationId);
+        try {
+            sessionJournal.appendStart(session);
+        } catch (RuntimeException e) {
+            discardNewSessions(List.of(session));
+            throw e;
+        }
         return session;
     }
 
     @Override
-    public ChargingSession stopSession(ChargingSession session) {
-        session.setStoppedAt(new Date());
-        session.setStatus(FINISHED);
-        return session;
+    public StopResult stopSession(UUID sessionId) {
+        var result = stop(sessionId, System.currentTimeMillis());
+        if (result.getOutcome() == StopResult.Outcome.STOPPED) {
+            try {
+                sessionJournal.appendStop(result.getSession());
+            } catch (RuntimeException e) {
+                resumeStoppedSessions(List.of(result.getSession()));
+                throw e;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<ChargingSession> addNewSessions(List<String> stationIds) {
+        var newSessions = storeNewSessions(stationIds);
+
+        // the sessions are journaled together, so their records are written in the same batches
+        try {
+            sessionJournal.appendStarts(newSessions);
+        } catch (RuntimeException e) {
+            discardNewSessions(newSessions);
+            throw e;
+        }
+        return newSessions;
+    }
+
+    @Override
+    public List<StopResult> stopSessions(List<UUID> sessionIds) {
+        var results = stopAll(sessionIds);
+        var stoppedSessions = stoppedSessions(results);
+        try {
+            sessionJournal.appendStops(stoppedSessions);
+        } catch (RuntimeException e) {
+            resumeStoppedSessions(stoppedSessions);
+            throw e;
+        }
+        return results;
+    }
+
+    @Override
+    public CompletableFuture<ChargingSession> addNewSessionAsync(String stationId) {
+        var session = storeNewSession(stationId);
+        return journalStartsAsync(List.of(session)).thenApply(written -> session);
+    }
+
+    @Override
+    public CompletableFuture<StopResult> stopSessionAsync(UUID sessionId) {
+        var result = stop(sessionId, System.currentTimeMillis());
+        if (result.getOutcome() != StopResult.Outcome.STOPPED) {
+            return CompletableFuture.completedFuture(result);
+        }
+        return journalStopsAsync(List.of(result.getSession())).thenApply(written -> result);
+    }
+
+    @Override
+    public CompletableFuture<List<ChargingSession>> addNewSessionsAsync(List<String> stationIds) {
+        var newSessions = storeNewSessions(stationIds);
+        return journalStartsAsync(newSessions).thenApply(written -> newSessions);
+    }
+
+    @Override
+    public CompletableFuture<List<StopResult>> stopSessionsAsync(List<UUID> sessionIds) {
+        var results = stopAll(sessionIds);
+        return journalStopsAsync(stoppedSessions(results)).thenApply(written -> results);
     }
 
     @Override
     public Set<ChargingSession> findAllSessions() {
-        return chargingSessions;
+        return chargingSessionsView;
+    }
+
+    @Override
+    public void forEachSession(SessionVisitor visitor) {
+        forEachSession(0, sessions.capacity(), visitor);
+    }
+
+    @Override
+    public int sessionPositionLimit() {
+        return sessions.capacity();
+    }
+
+    @Override
+    public void forEachSession(int fromPosition, int toPosition, SessionVisitor visitor) {
+        SessionSlab.SlotReader<Boolean> reader = (idHi, idLo, stationCode, startedAt, stoppedAt) -> {
+            visitor.visit(idHi, idLo, stations.stationId(stationCode), startedAt, stoppedAt);
+            return Boolean.TRUE;
+        };
+        // the positions are the slots, the released ones are skipped
+        int end = Math.min(toPosition, sessions.capacity());
+        for (int slot = Math.max(fromPosition, sessions.firstSlot()); slot < end; slot++) {
+            sessions.read(slot, reader);
+        }
+    }
+
+    @Override
+    public long modificationVersion() {
+        // the changes are counted after they are published, so the changes counted in the version are visible
+        return modifications.get();
+    }
+
+    @Override
+    public List<ChargingSession> findActiveSessions() {
+        var activeSessions = new ArrayList<ChargingSession>(liveSlots.size());
+        for (var slot : liveSlots) {
+            // skip the sessions stopped but not yet removed from the live ones
+            var session = view(slot);
+            if (session != null && session.getStatus() == IN_PROGRESS) {
+                activeSessions.add(session);
+            }
+        }
+        return activeSessions;
+    }
+
+    @Override
+    public List<ChargingSession> findByStationId(String stationId) {
+        var code = stations.find(stationId);
+        var stationSlots = code == 0 ? null : stationSlots(code);
+        if (stationSlots == null) {
+            return List.of();
+        }
+
+        var slots = stationSlots.toArray();
+        var stationSessions = new ArrayList<ChargingSession>(slots.length);
+        for (var slot : slots) {
+            // skip the slots evicted since they were read
+            var session = slot < 0 ? null : view(slot);
+            if (session != null) {
+                stationSessions.add(session);
+            }
+        }
+        return stationSessions;
+    }
+
+    @Override
+    public SessionPage findSessionsFrom(int fromPosition, int limit) {
+        // the positions are the slots, a page resumes after the evicted ones
+        var slot = Math.max(fromPosition, sessions.firstSlot());
+        var capacity = sessions.capacity();
+        var page = new ArrayList<ChargingSession>(Math.min(limit, 1024));
+        for (; slot < capacity && page.size() < limit; slot++) {
+            var session = view(slot);
+            if (session != null) {
+                page.add(session);
+            }
+        }
+
+        var nextPosition = slot;
+        for (; slot < capacity; slot++) {
+            if (view(slot) != null) {
+                return new SessionPage(page, nextPosition);
+            }
+        }
+        return new SessionPage(page, -1);
+    }
+
+    @Override
+    public List<SessionActivity> countSessionsByPeriod(long from, long to, TimeGranularity granularity) {
+        return sessionTimes.activity(from, to, granularity);
     }
 
     @Override
     public Optional<ChargingSession> findById(UUID sessionId) {
-        return chargingSessions
-                .stream()
-                .filter(cs -> cs.getId().equals(sessionId))
-                .findFirst();
+        var slot = findSlot(sessionId);
+        return slot < 0 ? Optional.empty() : Optional.ofNullable(view(slot));
+    }
+
+    @Override
+    public List<ChargingSession> evictFinishedSessions(long stoppedBefore, long maxSessions, int limit) {
+        return evictFinishedSessions(stoppedBefore, maxSessions, limit, evicted -> {
+        });
+    }
+
+    @Override
+    public synchronized List<ChargingSession> evictFinishedSessions(long stoppedBefore, long maxSessions, int limit,
+                                                                    Consumer<List<ChargingSession>> beforeEviction) {
+        var evicted = new ArrayList<ChargingSession>();
+        var evictedSlots = new ArrayList<Integer>();
+        var capacity = sessions.capacity();
+        var slot = Math.max(evictionCursor, sessions.firstSlot());
+        var end = Math.min(capacity, slot + limit);
+        for (; slot < end; slot++) {
+            var session = view(slot);
+            if (session == null) {
+                if (sessions.isEvicted(slot)) {
+                    continue;
+                }
+                // past the last stored session, the next pass restarts from the oldest one
+                break;
+            }
+
+            var overCount = maxSessions > 0 && sessionCount.sum() - evicted.size() > maxSessions;
+            if (!overCount && session.getStartedAt().getTime() >= stoppedBefore) {
+                // the sessions are stored in start order, no later session was stopped before the limit
+                break;
+            }
+            if (session.getStatus() == FINISHED && (overCount || session.getStoppedAt().getTime() < stoppedBefore)) {
+                evicted.add(session);
+                evictedSlots.add(slot);
+            }
+        }
+
+        // a failure leaves the sessions and the cursor as they were, so that the next pass visits them again
+        if (!evicted.isEmpty()) {
+            beforeEviction.accept(evicted);
+        }
+        for (int i = 0; i < evicted.size(); i++) {
+            evict(evictedSlots.get(i), evicted.get(i));
+        }
+
+        // the next pass resumes after this one, or restarts from the oldest session not evicted
+        evictionCursor = slot < end || slot >= capacity ? evictionStart : slot;
+        while (evictionStart < capacity && sessions.isEvicted(evictionStart)) {
+            evictionStart++;
+        }
+        evictionCursor = Math.max(evictionCursor, evictionStart);
+        return evicted;
     }
 
     @Override
     public void deleteAllSessions() {
-        chargingSessions.clear();
+        sessionIds.clear();
+        sessions.clear();
+        liveSlots.clear();
+        slotsByStation = new SlotList[64];
+        stations.clear();
+        sessionTimes.clear();
+        sessionCount.reset();
+        synchronized (this) {
+            evictionStart = 0;
+            evictionCursor = 0;
+            evictedByStation.clear();
+        }
+        modifications.incrementAndGet();
+    }
+
+    /**
+     * The number of stored sessions
+     */
+    public long countSessions() {
+        return sessionCount.sum();
+    }
+
+    /**
+     * The number of sessions in progress
+     */
+    public int countActiveSessions() {
+        return liveSlots.size();
+    }
+
+    /**
+     * The number of bytes allocated by the session slots and the id index
+     */
+    public long memoryFootprint() {
+        return sessions.memoryFootprint() + sessionIds.memoryFootprint();
+    }
+
+    private ChargingSession storeNewSession(String stationId) {
+        // the view shares the station id instance of the dictionary
+        return view(store(sessionIdGenerator.nextId(), stationId, System.currentTimeMillis()));
+    }
+
+    private List<ChargingSession> storeNewSessions(List<String> stationIds) {
+        var newSessions = new ArrayList<ChargingSession>(stationIds.size());
+        for (var stationId : stationIds) {
+            newSessions.add(storeNewSession(stationId));
+        }
+        return newSessions;
+    }
+
+    private StopResult stop(UUID sessionId, long stoppedAt) {
+        var slot = findSlot(sessionId);
+        if (slot < 0) {
+            return StopResult.notFound();
+        }
+
+        // only the winner of the compare-and-set on the stop time stops and journals the session
+        var session = view(slot);
+        if (session == null) {
+            return StopResult.notFound();
+        }
+        if (!markStopped(slot, stoppedAt)) {
+            var stoppedSession = view(slot);
+            return stoppedSession == null ? StopResult.notFound() : StopResult.alreadyStopped(stoppedSession);
+        }
+        return StopResult.stopped(session.stop(new Date(stoppedAt)));
+    }
+
+    private List<StopResult> stopAll(List<UUID> sessionIds) {
+        var results = new ArrayList<StopResult>(sessionIds.size());
+        var stoppedAt = System.currentTimeMillis();
+        for (var sessionId : sessionIds) {
+            results.add(stop(sessionId, stoppedAt));
+        }
+        return results;
+    }
+
+    private static List<ChargingSession> stoppedSessions(List<StopResult> results) {
+        var stoppedSessions = new ArrayList<ChargingSession>(results.size());
+        for (var result : results) {
+            if (result.getOutcome() == StopResult.Outcome.STOPPED) {
+                stoppedSessions.add(result.getSession());
+            }
+        }
+        return stoppedSessions;
+    }
+
+    /**
+     * Journal the starts of new sessions, the sessions are discarded if the records fail to be written
+     */
+    private CompletableFuture<Void> journalStartsAsync(List<ChargingSession> newSessions) {
+        return sessionJournal.appendStartsAsync(newSessions).whenComplete((written, failure) -> {
+            if (failure != null) {
+                discardNewSessions(newSessions);
+            }
+        });
+    }
+
+    /**
+     * Journal the stops of sessions, the sessions are resumed if the records fail to be written
+     */
+    private CompletableFuture<Void> journalStopsAsync(List<ChargingSession> stoppedSessions) {
+        return sessionJournal.appendStopsAsync(stoppedSessions).whenComplete((written, failure) -> {
+            if (failure != null) {
+                resumeStoppedSessions(stoppedSessions);
+            }
+        });
+    }
+
+    /**
+     * Roll back the adds of new sessions whose start records failed to be written, so that the failed add leaves
+     * nothing behind and its retry does not store the session twice. A record that reached the journal despite the
+     * failure, or a snapshot taken in between, still brings the session back on recovery.
+     * <p>
+     * Synchronized with the evictions, which share the eviction bookkeeping of the slots.
+     */
+    private synchronized void discardNewSessions(List<ChargingSession> newSessions) {
+        for (var newSession : newSessions) {
+            var slot = findSlot(newSession.getId());
+            var session = slot < 0 ? null : view(slot);
+            if (session == null) {
+                continue;
+            }
+            liveSlots.remove(slot);
+            sessionTimes.unrecordStart(session.getStartedAt().getTime());
+            // stopped meanwhile by a concurrent request
+            if (session.getStoppedAt() != null) {
+                sessionTimes.unrecordStop(session.getStoppedAt().getTime());
+            }
+            evict(slot, session);
+        }
+    }
+
+    /**
+     * Roll back the stops of sessions whose stop records failed to be written, so that their retry stops them again
+     * instead of finding them already stopped. Same caveat on recovery as {@link #discardNewSessions(List)}.
+     * <p>
+     * Synchronized with the evictions, so that an evicted session is not put back in the live ones.
+     */
+    private synchronized void resumeStoppedSessions(List<ChargingSession> stoppedSessions) {
+        for (var stoppedSession : stoppedSessions) {
+            var slot = findSlot(stoppedSession.getId());
+            var stoppedAt = stoppedSession.getStoppedAt().getTime();
+            if (slot >= 0 && sessions.resume(slot, stoppedAt)) {
+                liveSlots.add(slot);
+                sessionTimes.unrecordStop(stoppedAt);
+                modifications.incrementAndGet();
+            }
+        }
+    }
+
+    private int store(UUID sessionId, String stationId, long startedAt) {
+        // add a new charging session in the next slot, then in the indexes
+        var idHi = sessionId.getMostSignificantBits();
+        var idLo = sessionId.getLeastSignificantBits();
+        var code = stations.codeOf(stationId);
+        var slot = sessions.add(idHi, idLo, code, startedAt);
+        liveSlots.add(slot);
+        var stationSlots = stationSlots(code);
+        (stationSlots != null ? stationSlots : addStationSlots(code)).add(slot);
+        sessionIds.put(idHi, idLo, slot);
+        sessionTimes.recordStart(startedAt);
+        sessionCount.increment();
+        modifications.incrementAndGet();
+        return slot;
+    }
+
+    /**
+     * Stop an in progress session and remove it from the live ones
+     *
+     * @return {@code false} if the session was already stopped
+     */
+    private boolean markStopped(int slot, long stoppedAt) {
+        if (!sessions.stop(slot, stoppedAt)) {
+            return false;
+        }
+        liveSlots.remove(slot);
+        sessionTimes.recordStop(stoppedAt);
+        modifications.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Remove a finished or discarded session from the indexes, then release its slot
+     */
+    private void evict(int slot, ChargingSession session) {
+        var code = stations.find(session.getStationId());
+        sessionIds.remove(session.getId().getMostSignificantBits(), session.getId().getLeastSignificantBits());
+        sessions.evict(slot);
+        sessionCount.decrement();
+        modifications.incrementAndGet();
+
+        // the slot list of the station is compacted once a good part of it is evicted
+        var stationSlots = stationSlots(code);
+        var evictedSlots = evictedByStation.merge(code, 1, Integer::sum);
+        if (evictedSlots >= Math.max(64, stationSlots.size() / 2)) {
+            stationSlots.retainIf(stationSlot -> !sessions.isEvicted(stationSlot));
+            evictedByStation.remove(code);
+        }
+    }
+
+    private SlotList stationSlots(int code) {
+        var current = slotsByStation;
+        return code < current.length ? current[code] : null;
+    }
+
+    private synchronized SlotList addStationSlots(int code) {
+        var current = slotsByStation;
+        if (code >= current.length) {
+            current = Arrays.copyOf(current, Math.max(current.length * 2, code + 1));
+        }
+        if (current[code] == null) {
+            current[code] = new SlotList();
+        }
+        slotsByStation = current;
+        return current[code];
+    }
+
+    private int findSlot(UUID sessionId) {
+        return sessionIds.get(sessionId.getMostSignificantBits(), sessionId.getLeastSignificantBits());
+    }
+
+    /**
+     * Materialize the {@link ChargingSession} stored in a slot
+     *
+     * @return the session, or {@code null} if the slot is not published yet or was evicted
+     */
+    private ChargingSession view(int slot) {
+        return sessions.read(slot, (idHi, idLo, stationCode, startedAt, stoppedAt) -> new ChargingSession(
+                new UUID(idHi, idLo),
+                stations.stationId(stationCode),
+                new Date(startedAt),
+                stoppedAt == 0 ? null : new Date(stoppedAt),
+                stoppedAt == 0 ? IN_PROGRESS : FINISHED));
+    }
+
+    /**
+     * {@link Set} view of the stored sessions in insertion order, each session is read from its slot when iterated.
+     * Membership is checked by session id against the id index, which is consistent with {@link ChargingSession#equals(Object)}
+     */
+    private class SessionSetView extends AbstractSet<ChargingSession> {
+
+        @Override
+        public Iterator<ChargingSession> iterator() {
+            var capacity = sessions.capacity();
+            return new Iterator<>() {
+                private int slot = sessions.firstSlot();
+
+                private ChargingSession next = nextSession();
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public ChargingSession next() {
+                    if (next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    var session = next;
+                    next = nextSession();
+                    return session;
+                }
+
+                /**
+                 * Read the next published session ahead, so that a session evicted meanwhile is skipped
+                 */
+                private ChargingSession nextSession() {
+                    while (slot < capacity) {
+                        var session = view(slot++);
+                        if (session != null) {
+                            return session;
+                        }
+                    }
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return (int) sessionCount.sum();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof ChargingSession) || ((ChargingSession) o).getId() == null) {
+                return false;
+            }
+            return findSlot(((ChargingSession) o).getId()) >= 0;
+        }
     }
 
 }
@@ -0,0 +1,15 @@
+package com.charging.sessions.ccs.repository;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(SessionIdProperties.class)
+public class RepositoryConfiguration {
+
+    @Bean
+    public SessionIdGenerator sessionIdGenerator(SessionIdProperties properties) {
+        return properties.getStrategy().generator();
+    }
+}
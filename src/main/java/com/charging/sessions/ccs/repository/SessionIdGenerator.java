@@ -0,0 +1,24 @@
+package com.charging.sessions.ccs.repository;
+
+import java.util.UUID;
+
+/**
+ * Generates the ids of the new charging sessions
+ */
+public interface SessionIdGenerator {
+
+    /**
+     * Random version 4 ids from {@link UUID#randomUUID()}, unpredictable but drawn from a shared {@code SecureRandom}
+     */
+    SessionIdGenerator RANDOM = UUID::randomUUID;
+
+    /**
+     * Time-ordered version 7 ids, see {@link TimeOrderedSessionIdGenerator}
+     */
+    SessionIdGenerator TIME_ORDERED = new TimeOrderedSessionIdGenerator();
+
+    /**
+     * Generate the id of a new charging session
+     */
+    UUID nextId();
+}
@@ -0,0 +1,223 @@
+package com.charging.sessions.ccs.repository;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Hash index from session id to slot, stored in primitive arrays.
+ * <p>
+ * The index is split in segments, each one an open-addressing table with linear probing guarded by a {@link StampedLock}.
+ * Writers lock their segment only. Readers probe optimistically without taking the lock and only fall back
+ * to a read lock when a concurrent write to the same segment invalidated the probe.
+ * <p>
+ * Removal shifts the following entries of the probe sequence back instead of leaving tombstones, so lookups never
+ * slow down as sessions are removed.
+ */
+class SessionIdIndex {
+
+    private static final int SEGMENT_BITS = 6;
+    private static final int INITIAL_SEGMENT_CAPACITY = 64;
+
+    /**
+     * Bytes per table entry: the two halves of the id and the slot
+     */
+    private static final int ENTRY_BYTES = Long.BYTES * 2 + Integer.BYTES;
+
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+    SessionIdIndex() {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Find the slot of a session id
+     *
+     * @return the slot, or {@code -1} if the id is not indexed
+     */
+    int get(long idHi, long idLo) {
+        var hash = hash(idHi, idLo);
+        var segment = segments[hash >>> (Integer.SIZE - SEGMENT_BITS)];
+
+        var stamp = segment.tryOptimisticRead();
+        var slot = segment.find(idHi, idLo, hash);
+        if (!segment.validate(stamp)) {
+            stamp = segment.readLock();
+            try {
+                slot = segment.find(idHi, idLo, hash);
+            } finally {
+                segment.unlockRead(stamp);
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Index the slot of a session id, replacing any previous slot of the id
+     */
+    void put(long idHi, long idLo, int slot) {
+        var hash = hash(idHi, idLo);
+        var segment = segments[hash >>> (Integer.SIZE - SEGMENT_BITS)];
+
+        var stamp = segment.writeLock();
+        try {
+            segment.put(idHi, idLo, hash, slot);
+        } finally {
+            segment.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove the slot of a session id
+     *
+     * @return {@code false} if the id was not indexed
+     */
+    boolean remove(long idHi, long idLo) {
+        var hash = hash(idHi, idLo);
+        var segment = segments[hash >>> (Integer.SIZE - SEGMENT_BITS)];
+
+        var stamp = segment.writeLock();
+        try {
+            return segment.remove(idHi, idLo, hash);
+        } finally {
+            segment.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * The number of bytes allocated by the index tables
+     */
+    long memoryFootprint() {
+        long entries = 0;
+        for (var segment : segments) {
+            entries += segment.table.slots.length;
+        }
+        return entries * ENTRY_BYTES;
+    }
+
+    /**
+     * Drop every indexed id. Not safe with concurrent writes
+     */
+    void clear() {
+        for (var segment : segments) {
+            var stamp = segment.writeLock();
+            try {
+                segment.table = new Table(INITIAL_SEGMENT_CAPACITY);
+                segment.size = 0;
+            } finally {
+                segment.unlockWrite(stamp);
+            }
+        }
+    }
+
+    private static int hash(long idHi, long idLo) {
+        var h = (idHi ^ idLo) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static class Segment extends StampedLock {
+
+        private Table table = new Table(INITIAL_SEGMENT_CAPACITY);
+
+        private int size;
+
+        int find(long idHi, long idLo, int hash) {
+            var current = table;
+            var mask = current.slots.length - 1;
+            for (int probe = 0, i = hash & mask; probe <= mask; probe++, i = (i + 1) & mask) {
+                var slot = current.slots[i];
+                if (slot == 0) {
+                    return -1;
+                }
+                if (current.idHi[i] == idHi && current.idLo[i] == idLo) {
+                    return slot - 1;
+                }
+            }
+            return -1;
+        }
+
+        void put(long idHi, long idLo, int hash, int slot) {
+            if ((size + 1) * 4L > table.slots.length * 3L) {
+                resize();
+            }
+            if (insert(table, idHi, idLo, hash, slot)) {
+                size++;
+            }
+        }
+
+        boolean remove(long idHi, long idLo, int hash) {
+            var current = table;
+            var mask = current.slots.length - 1;
+            var i = hash & mask;
+            while (current.slots[i] != 0 && (current.idHi[i] != idHi || current.idLo[i] != idLo)) {
+                i = (i + 1) & mask;
+            }
+            if (current.slots[i] == 0) {
+                return false;
+            }
+
+            // move back every following entry of the run whose home is not between the hole and itself
+            for (var j = (i + 1) & mask; current.slots[j] != 0; j = (j + 1) & mask) {
+                var home = hash(current.idHi[j], current.idLo[j]) & mask;
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    current.idHi[i] = current.idHi[j];
+                    current.idLo[i] = current.idLo[j];
+                    current.slots[i] = current.slots[j];
+                    i = j;
+                }
+            }
+            current.slots[i] = 0;
+            size--;
+            return true;
+        }
+
+        private void resize() {
+            var current = table;
+            var resized = new Table(current.slots.length * 2);
+            for (int i = 0; i < current.slots.length; i++) {
+                if (current.slots[i] != 0) {
+                    insert(resized, current.idHi[i], current.idLo[i], hash(current.idHi[i], current.idLo[i]),
+                            current.slots[i] - 1);
+                }
+            }
+            table = resized;
+        }
+
+        /**
+         * @return {@code true} if a new entry was added, {@code false} if an existing one was replaced
+         */
+        private static boolean insert(Table table, long idHi, long idLo, int hash, int slot) {
+            var mask = table.slots.length - 1;
+            var i = hash & mask;
+            while (table.slots[i] != 0) {
+                if (table.idHi[i] == idHi && table.idLo[i] == idLo) {
+                    table.slots[i] = slot + 1;
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            table.idHi[i] = idHi;
+            table.idLo[i] = idLo;
+            table.slots[i] = slot + 1;
+            return true;
+        }
+    }
+
+    /**
+     * Open-addressing table, a {@code 0} entry in {@link #slots} is empty, otherwise it holds the slot plus one
+     */
+    private static class Table {
+
+        private final long[] idHi;
+
+        private final long[] idLo;
+
+        private final int[] slots;
+
+        Table(int capacity) {
+            idHi = new long[capacity];
+            idLo = new long[capacity];
+            slots = new int[capacity];
+        }
+    }
+}
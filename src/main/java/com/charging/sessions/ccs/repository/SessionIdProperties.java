@@ -0,0 +1,14 @@
+package com.charging.sessions.ccs.repository;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "ccs.session-id")
+public class SessionIdProperties {
+
+    /**
+     * How the ids of the new charging sessions are generated
+     */
+    private SessionIdStrategy strategy = SessionIdStrategy.RANDOM;
+}
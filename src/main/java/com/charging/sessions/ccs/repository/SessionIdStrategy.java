@@ -0,0 +1,24 @@
+package com.charging.sessions.ccs.repository;
+
+public enum SessionIdStrategy {
+
+    /**
+     * Random version 4 ids, see {@link SessionIdGenerator#RANDOM}
+     */
+    RANDOM(SessionIdGenerator.RANDOM),
+
+    /**
+     * Time-ordered version 7 ids with thread-local randomness, see {@link SessionIdGenerator#TIME_ORDERED}
+     */
+    TIME_ORDERED(SessionIdGenerator.TIME_ORDERED);
+
+    private final SessionIdGenerator generator;
+
+    SessionIdStrategy(SessionIdGenerator generator) {
+        this.generator = generator;
+    }
+
+    public SessionIdGenerator generator() {
+        return generator;
+    }
+}
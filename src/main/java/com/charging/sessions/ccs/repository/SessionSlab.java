@@ -0,0 +1,243 @@
+package com.charging.sessions.ccs.repository;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Fixed-width storage of charging sessions in primitive arrays.
+ * <p>
+ * Each session occupies one slot made of the two halves of its id, its start and stop times in epoch millis
+ * and the code of its station, 36 bytes in total. Slots are allocated in insertion order and grouped in chunks,
+ * so the storage grows without copying the stored sessions and without an object per session.
+ * <p>
+ * A slot is published by writing its station code last, a slot with code {@code 0} is not readable yet.
+ * The stop time is the only mutable field, {@code 0} while the session is in progress. It is changed with
+ * compare-and-set, so the status derived from it can never disagree with the stop time.
+ * <p>
+ * An evicted slot keeps its place with the {@link #EVICTED} code, so the insertion order of the other slots does not
+ * change. Once every slot of a chunk is evicted the chunk is released, and reading one of its slots finds nothing.
+ */
+class SessionSlab {
+
+    static final int CHUNK_BITS = 14;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * The number of bytes stored per session
+     */
+    static final int SLOT_BYTES = Long.BYTES * 4 + Integer.BYTES;
+
+    /**
+     * The station code of an evicted slot
+     */
+    private static final int EVICTED = -1;
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    /**
+     * The index of the next slot counter in {@link #nextSlot}, 64 bytes from both ends of the array
+     */
+    private static final int NEXT_SLOT = 16;
+
+    /**
+     * Holds the next slot counter, incremented by every writer, in the middle of 128 bytes of padding so that it does
+     * not share a cache line with the chunk table or another field read by every access
+     */
+    private final AtomicIntegerArray nextSlot = new AtomicIntegerArray(2 * NEXT_SLOT);
+
+    private volatile Chunk[] chunks = new Chunk[16];
+
+    /**
+     * The number of leading chunks released, no slot below {@link #firstSlot()} is stored
+     */
+    private volatile int releasedChunks;
+
+    /**
+     * The indexes of the released chunks, guarded by the slab
+     */
+    private final BitSet released = new BitSet();
+
+    /**
+     * Store a new session in the next free slot
+     *
+     * @return the slot of the session
+     */
+    int add(long idHi, long idLo, int stationCode, long startedAt) {
+        var slot = nextSlot.getAndIncrement(NEXT_SLOT);
+        var chunk = chunkForWrite(slot);
+        var i = slot & CHUNK_MASK;
+
+        chunk.idHi[i] = idHi;
+        chunk.idLo[i] = idLo;
+        chunk.startedAt[i] = startedAt;
+        INTS.setRelease(chunk.stationCode, i, stationCode);
+        return slot;
+    }
+
+    /**
+     * The upper bound of the allocated slots, slots below it may still be unpublished
+     */
+    int capacity() {
+        return nextSlot.get(NEXT_SLOT);
+    }
+
+    /**
+     * The lower bound of the stored slots, the slots below it belong to released chunks
+     */
+    int firstSlot() {
+        return releasedChunks << CHUNK_BITS;
+    }
+
+    /**
+     * Read the session of a slot from a single chunk, so that it cannot be released in the middle of the read
+     *
+     * @return the value built by the reader, or {@code null} if the slot is not published
+     */
+    <T> T read(int slot, SlotReader<T> reader) {
+        var chunk = chunk(slot);
+        if (chunk == null) {
+            return null;
+        }
+
+        var i = slot & CHUNK_MASK;
+        var stationCode = (int) INTS.getAcquire(chunk.stationCode, i);
+        if (stationCode <= 0) {
+            return null;
+        }
+        return reader.read(chunk.idHi[i], chunk.idLo[i], stationCode, chunk.startedAt[i],
+                (long) LONGS.getAcquire(chunk.stoppedAt, i));
+    }
+
+    /**
+     * Atomically stop an in progress session
+     *
+     * @return {@code false} if the session was already stopped or evicted
+     */
+    boolean stop(int slot, long stoppedAt) {
+        var chunk = chunk(slot);
+        return chunk != null && LONGS.compareAndSet(chunk.stoppedAt, slot & CHUNK_MASK, 0L, stoppedAt);
+    }
+
+    /**
+     * Atomically put a stopped session back in progress, if it is still stopped at the given time
+     *
+     * @return {@code false} if the session was not stopped at that time or was evicted
+     */
+    boolean resume(int slot, long stoppedAt) {
+        var chunk = chunk(slot);
+        return chunk != null && LONGS.compareAndSet(chunk.stoppedAt, slot & CHUNK_MASK, stoppedAt, 0L);
+    }
+
+    /**
+     * Evict the session of a published slot. Only one thread evicts, the chunk is released with its last slot
+     *
+     * @return {@code false} if the slot is not published
+     */
+    boolean evict(int slot) {
+        var chunk = chunk(slot);
+        if (chunk == null || (int) INTS.getAcquire(chunk.stationCode, slot & CHUNK_MASK) <= 0) {
+            return false;
+        }
+
+        INTS.setRelease(chunk.stationCode, slot & CHUNK_MASK, EVICTED);
+        if (++chunk.evictedSlots == CHUNK_SIZE) {
+            releaseChunk(slot >>> CHUNK_BITS);
+        }
+        return true;
+    }
+
+    /**
+     * Whether the session of a slot was evicted
+     */
+    boolean isEvicted(int slot) {
+        if (slot < firstSlot()) {
+            return true;
+        }
+        var chunk = chunk(slot);
+        return chunk != null && (int) INTS.getAcquire(chunk.stationCode, slot & CHUNK_MASK) == EVICTED;
+    }
+
+    /**
+     * The number of bytes allocated by the stored slots
+     */
+    long memoryFootprint() {
+        long allocatedChunks = 0;
+        for (var chunk : chunks) {
+            if (chunk != null) {
+                allocatedChunks++;
+            }
+        }
+        return allocatedChunks * CHUNK_SIZE * SLOT_BYTES;
+    }
+
+    /**
+     * Drop every stored session. Not safe with concurrent writes
+     */
+    synchronized void clear() {
+        chunks = new Chunk[16];
+        released.clear();
+        releasedChunks = 0;
+        nextSlot.set(NEXT_SLOT, 0);
+    }
+
+    private Chunk chunk(int slot) {
+        var allChunks = chunks;
+        var index = slot >>> CHUNK_BITS;
+        return index < allChunks.length ? allChunks[index] : null;
+    }
+
+    private Chunk chunkForWrite(int slot) {
+        var chunk = chunk(slot);
+        return chunk != null ? chunk : allocateChunk(slot >>> CHUNK_BITS);
+    }
+
+    private synchronized Chunk allocateChunk(int index) {
+        var allChunks = chunks;
+        if (index >= allChunks.length) {
+            var grown = new Chunk[Math.max(allChunks.length * 2, index + 1)];
+            System.arraycopy(allChunks, 0, grown, 0, allChunks.length);
+            allChunks = grown;
+        }
+        if (allChunks[index] == null) {
+            allChunks[index] = new Chunk();
+        }
+        chunks = allChunks;
+        return allChunks[index];
+    }
+
+    private synchronized void releaseChunk(int index) {
+        chunks[index] = null;
+        released.set(index);
+        releasedChunks = released.nextClearBit(releasedChunks);
+    }
+
+    /**
+     * Builds a value from the fields of a slot
+     */
+    interface SlotReader<T> {
+
+        T read(long idHi, long idLo, int stationCode, long startedAt, long stoppedAt);
+    }
+
+    private static class Chunk {
+
+        private final long[] idHi = new long[CHUNK_SIZE];
+
+        private final long[] idLo = new long[CHUNK_SIZE];
+
+        private final long[] startedAt = new long[CHUNK_SIZE];
+
+        private final long[] stoppedAt = new long[CHUNK_SIZE];
+
+        private final int[] stationCode = new int[CHUNK_SIZE];
+
+        /**
+         * The number of evicted slots, only updated by the evicting thread
+         */
+        private int evictedSlots;
+    }
+}
@@ -0,0 +1,33 @@
+package com.charging.sessions.ccs.repository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gauges of the number of stored sessions and of the memory they take, read from the repository on every scrape
+ */
+@Component
+public class SessionStoreMetrics implements MeterBinder {
+
+    private final ChargingSessionRepositoryImpl sessionRepository;
+
+    public SessionStoreMetrics(ChargingSessionRepositoryImpl sessionRepository) {
+        this.sessionRepository = sessionRepository;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("ccs.sessions.live", sessionRepository, ChargingSessionRepositoryImpl::countActiveSessions)
+                .description("The number of charging sessions in progress")
+                .register(registry);
+        Gauge.builder("ccs.sessions.total", sessionRepository, ChargingSessionRepositoryImpl::countSessions)
+                .description("The number of stored charging sessions")
+                .register(registry);
+        Gauge.builder("ccs.sessions.memory", sessionRepository, ChargingSessionRepositoryImpl::memoryFootprint)
+                .description("The number of bytes allocated to store the charging sessions")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+}
@@ -0,0 +1,140 @@
+package com.charging.sessions.ccs.repository;
+
+import com.charging.sessions.ccs.model.SessionActivity;
+import com.charging.sessions.ccs.model.TimeGranularity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Time-partitioned counters of the started and stopped charging sessions.
+ * <p>
+ * Each {@link TimeGranularity} has its own skip list of periods ordered by period start, and every start or stop
+ * increments the counter of its period at each granularity. A range query therefore only reads the periods of the
+ * requested granularity that overlap the range, its cost does not depend on the number of stored sessions.
+ * <p>
+ * Almost every event falls in the current period, so the latest period of each granularity is also kept aside:
+ * counting an event of that period increments its counters without a lookup in the skip list nor a boxed key.
+ */
+class SessionTimeIndex {
+
+    private static final TimeGranularity[] GRANULARITIES = TimeGranularity.values();
+
+    private final ConcurrentNavigableMap<Long, Counters>[] periods;
+
+    /**
+     * The latest period counted per granularity, a racy cache of an entry of {@link #periods}
+     */
+    private final Period[] latestPeriods = new Period[GRANULARITIES.length];
+
+    @SuppressWarnings("unchecked")
+    SessionTimeIndex() {
+        periods = new ConcurrentNavigableMap[GRANULARITIES.length];
+        for (int i = 0; i < periods.length; i++) {
+            periods[i] = new ConcurrentSkipListMap<>();
+        }
+    }
+
+    /**
+     * Count a session started at the given epoch millis
+     */
+    void recordStart(long startedAt) {
+        for (var granularity : GRANULARITIES) {
+            counters(granularity, startedAt).started.increment();
+        }
+    }
+
+    /**
+     * Count a session stopped at the given epoch millis
+     */
+    void recordStop(long stoppedAt) {
+        for (var granularity : GRANULARITIES) {
+            counters(granularity, stoppedAt).stopped.increment();
+        }
+    }
+
+    /**
+     * Uncount a session started at the given epoch millis, whose start was rolled back
+     */
+    void unrecordStart(long startedAt) {
+        for (var granularity : GRANULARITIES) {
+            counters(granularity, startedAt).started.decrement();
+        }
+    }
+
+    /**
+     * Uncount a session stopped at the given epoch millis, whose stop was rolled back
+     */
+    void unrecordStop(long stoppedAt) {
+        for (var granularity : GRANULARITIES) {
+            counters(granularity, stoppedAt).stopped.decrement();
+        }
+    }
+
+    /**
+     * The counters of the periods with any activity from the period containing {@code from} until {@code to}
+     *
+     * @param from        the start of the range in epoch millis, inclusive
+     * @param to          the end of the range in epoch millis, exclusive
+     * @param granularity the width of the periods
+     */
+    List<SessionActivity> activity(long from, long to, TimeGranularity granularity) {
+        var range = periods[granularity.ordinal()].subMap(granularity.periodStart(from), true, to, false);
+
+        var activity = new ArrayList<SessionActivity>(range.size());
+        range.forEach((periodStart, counters) -> {
+            long started = counters.started.sum();
+            long stopped = counters.stopped.sum();
+            // the counters of a period may be back to zero after a rollback
+            if (started != 0 || stopped != 0) {
+                activity.add(new SessionActivity(periodStart, started, stopped));
+            }
+        });
+        return activity;
+    }
+
+    void clear() {
+        for (var granularityPeriods : periods) {
+            granularityPeriods.clear();
+        }
+        Arrays.fill(latestPeriods, null);
+    }
+
+    private Counters counters(TimeGranularity granularity, long time) {
+        var latestPeriod = latestPeriods[granularity.ordinal()];
+        if (latestPeriod != null && time >= latestPeriod.start && time - latestPeriod.start < granularity.getMillis()) {
+            return latestPeriod.counters;
+        }
+
+        var periodStart = granularity.periodStart(time);
+        var counters = periods[granularity.ordinal()].computeIfAbsent(periodStart, k -> new Counters());
+        if (latestPeriod == null || periodStart > latestPeriod.start) {
+            // the fields are final, so a thread reading the new period sees its counters
+            latestPeriods[granularity.ordinal()] = new Period(periodStart, counters);
+        }
+        return counters;
+    }
+
+    private static class Period {
+
+        private final long start;
+
+        private final Counters counters;
+
+        private Period(long start, Counters counters) {
+            this.start = start;
+            this.counters = counters;
+        }
+    }
+
+    private static class Counters {
+
+        private final LongAdder started = new LongAdder();
+
+        private final LongAdder stopped = new LongAdder();
+    }
+}
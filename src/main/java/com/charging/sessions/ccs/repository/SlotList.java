@@ -0,0 +1,70 @@
+package com.charging.sessions.ccs.repository;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * List of slots in insertion order. Writes are serialized, reads never lock and see a consistent prefix of the list.
+ * <p>
+ * The entries at and after the size are always {@code -1}, so a reader that read the size before a concurrent
+ * {@link #retainIf(IntPredicate)} finds {@code -1} in place of the removed slots and skips them.
+ */
+class SlotList {
+
+    private volatile int[] slots = emptySlots(8);
+
+    private volatile int size;
+
+    synchronized void add(int slot) {
+        var current = slots;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+            Arrays.fill(current, size, current.length, -1);
+            slots = current;
+        }
+        current[size] = slot;
+        size = size + 1;
+    }
+
+    /**
+     * Keep only the slots matching a predicate, shrinking the list when most of it is removed
+     */
+    synchronized void retainIf(IntPredicate predicate) {
+        var current = slots;
+        var currentSize = size;
+        var retained = emptySlots(currentSize * 4 < current.length && current.length > 8
+                ? current.length / 2 : current.length);
+        var retainedSize = 0;
+        for (int i = 0; i < currentSize; i++) {
+            if (predicate.test(current[i])) {
+                if (retainedSize == retained.length) {
+                    retained = Arrays.copyOf(retained, retained.length * 2);
+                    Arrays.fill(retained, retainedSize, retained.length, -1);
+                }
+                retained[retainedSize++] = current[i];
+            }
+        }
+        slots = retained;
+        size = retainedSize;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * A copy of the slots appended so far, a slot removed concurrently may be read as {@code -1}
+     */
+    int[] toArray() {
+        // the size is read first, the array read after it holds at least that many slots unless it was shrunk
+        var currentSize = size;
+        var current = slots;
+        return Arrays.copyOf(current, Math.min(currentSize, current.length));
+    }
+
+    private static int[] emptySlots(int capacity) {
+        var emptySlots = new int[capacity];
+        Arrays.fill(emptySlots, -1);
+        return emptySlots;
+    }
+}
@@ -0,0 +1,26 @@
+package com.charging.sessions.ccs.repository;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates version 7 UUIDs: the 48 most significant bits are the creation time in milliseconds and the other
+ * 74 bits, apart from the version and variant, are random. The ids sort in creation order to the millisecond,
+ * so that the ids of close sessions are close in sorted storage and logs.
+ * <p>
+ * The random bits are drawn from {@link ThreadLocalRandom}, so the submitting threads never contend. They are not
+ * cryptographically strong: an id must not be relied upon as a secret
+ */
+class TimeOrderedSessionIdGenerator implements SessionIdGenerator {
+
+    private static final long VERSION = 0x7000L;
+    private static final long VARIANT = 0x8000_0000_0000_0000L;
+
+    @Override
+    public UUID nextId() {
+        var random = ThreadLocalRandom.current();
+        var idHi = System.currentTimeMillis() << 16 | VERSION | random.nextInt() & 0xFFF;
+        var idLo = random.nextLong() >>> 2 | VARIANT;
+        return new UUID(idHi, idLo);
+    }
+}
@@ -0,0 +1,42 @@
+package com.charging.sessions.ccs.retention;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "ccs.retention")
+public class RetentionProperties {
+
+    /**
+     * Whether the finished charging sessions past the retention are evicted in the background
+     */
+    private boolean enabled = false;
+
+    /**
+     * The time a finished session is kept after its stop, no limit if not set
+     */
+    private Duration maxAge;
+
+    /**
+     * The maximum number of stored sessions, the oldest finished ones are evicted beyond it, {@code 0} for no limit
+     */
+    private long maxSessions = 0;
+
+    /**
+     * The delay between two eviction passes
+     */
+    private Duration sweepInterval = Duration.ofSeconds(1);
+
+    /**
+     * The maximum number of stored sessions visited by one eviction pass
+     */
+    private int batchSize = 10_000;
+
+    /**
+     * The directory where the evicted sessions are archived in compressed files, not archived if not set
+     */
+    private Path archiveDirectory;
+}
@@ -0,0 +1,69 @@
+package com.charging.sessions.ccs.retention;
+
+import com.charging.sessions.ccs.model.ChargingSession;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Archive of the evicted charging sessions, one gzip compressed file of JSON lines per day of eviction.
+ * <p>
+ * Each call appends a new gzip member to the file of the day. A file of concatenated members is still a valid gzip
+ * file, so {@code gunzip} or {@link java.util.zip.GZIPInputStream} read all the sessions archived that day.
+ */
+class SessionArchive {
+
+    private final Path directory;
+
+    private final ObjectMapper objectMapper;
+
+    SessionArchive(Path directory, ObjectMapper objectMapper) {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Append sessions to the archive of the day
+     *
+     * @param sessions the evicted sessions
+     * @param now      the eviction time, choosing the file
+     * @return the archive file
+     * @throws IOException if the sessions are not archived, the file is then left as it was
+     */
+    Path append(List<ChargingSession> sessions, long now) throws IOException {
+        Files.createDirectories(directory);
+        var file = directory.resolve("sessions-" + Instant.ofEpochMilli(now).atOffset(ZoneOffset.UTC).toLocalDate()
+                + ".ndjson.gz");
+
+        var size = Files.exists(file) ? Files.size(file) : 0;
+        try (var output = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+             var generator = objectMapper.getFactory().createGenerator(output)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            for (var session : sessions) {
+                objectMapper.writeValue(generator, session);
+                generator.writeRaw('\n');
+            }
+        } catch (IOException e) {
+            // a partly written member would make the members appended after it unreadable
+            try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(size);
+            } catch (IOException truncateFailure) {
+                e.addSuppressed(truncateFailure);
+            }
+            throw e;
+        }
+        return file;
+    }
+}
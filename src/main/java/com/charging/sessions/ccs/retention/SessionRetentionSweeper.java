@@ -0,0 +1,83 @@
+package com.charging.sessions.ccs.retention;
+
+import com.charging.sessions.ccs.model.ChargingSession;
+import com.charging.sessions.ccs.repository.ChargingSessionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.IntervalTask;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Enforces the retention of the finished charging sessions in the background. Each pass visits a small batch of
+ * stored sessions and evicts the ones past the retention, so the store stays bounded without a long pause
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "ccs.retention", name = "enabled", havingValue = "true")
+public class SessionRetentionSweeper implements SchedulingConfigurer {
+
+    private final ChargingSessionRepository sessionRepository;
+
+    private final RetentionProperties properties;
+
+    private final SessionArchive sessionArchive;
+
+    private final Counter evictedSessions;
+
+    public SessionRetentionSweeper(ChargingSessionRepository sessionRepository, RetentionProperties properties,
+                                   ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.sessionRepository = sessionRepository;
+        this.properties = properties;
+        this.sessionArchive = properties.getArchiveDirectory() == null
+                ? null : new SessionArchive(properties.getArchiveDirectory(), objectMapper);
+        this.evictedSessions = Counter.builder("ccs.sessions.evicted")
+                .description("The number of finished charging sessions evicted by the retention")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
+        var interval = properties.getSweepInterval().toMillis();
+        taskRegistrar.addFixedDelayTask(new IntervalTask(this::sweep, interval, interval));
+    }
+
+    void sweep() {
+        var now = System.currentTimeMillis();
+        var stoppedBefore = properties.getMaxAge() == null ? Long.MIN_VALUE : now - properties.getMaxAge().toMillis();
+        try {
+            // the sessions are archived before they are evicted, a failed archive keeps them stored for the next pass
+            var evicted = sessionRepository.evictFinishedSessions(stoppedBefore, properties.getMaxSessions(),
+                    properties.getBatchSize(), sessions -> archive(sessions, now));
+            if (evicted.isEmpty()) {
+                return;
+            }
+
+            evictedSessions.increment(evicted.size());
+            log.debug("Evicted {} finished charging sessions", evicted.size());
+        } catch (UncheckedIOException e) {
+            log.error("Failed to archive the finished charging sessions, they are kept until archived", e.getCause());
+        } catch (RuntimeException e) {
+            log.error("Failed to evict the finished charging sessions", e);
+        }
+    }
+
+    private void archive(List<ChargingSession> sessions, long now) {
+        if (sessionArchive == null) {
+            return;
+        }
+        try {
+            sessionArchive.append(sessions, now);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
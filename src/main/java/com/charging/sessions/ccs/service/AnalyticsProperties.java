@@ -0,0 +1,19 @@
+package com.charging.sessions.ccs.service;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "ccs.analytics")
+public class AnalyticsProperties {
+
+    /**
+     * The number of threads aggregating the sessions, {@code 0} for one per available processor
+     */
+    private int parallelism = 0;
+
+    /**
+     * The number of stored positions aggregated by a single task, the larger ranges are split in halves
+     */
+    private int chunkSize = 65_536;
+}
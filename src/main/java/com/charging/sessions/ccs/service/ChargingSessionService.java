@@ -1,11 +1,18 @@
 package com.charging.sessions.ccs.service;
 
+import com.charging.sessions.ccs.model.SessionVisitor;
+import com.charging.sessions.ccs.payload.ChargingSessionBatchResultPayload;
+import com.charging.sessions.ccs.payload.ChargingSessionHistogramPayload;
+import com.charging.sessions.ccs.payload.ChargingSessionPagePayload;
 import com.charging.sessions.ccs.payload.ChargingSessionRequestPayload;
 import com.charging.sessions.ccs.payload.ChargingSessionResponsePayload;
 import com.charging.sessions.ccs.payload.ChargingSessionSummaryPayload;
 
+import java.util.Date;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 public interface ChargingSessionService {
 
@@ -13,23 +20,91 @@ public interface ChargingSessionService {
      * Submit a new charging session
      *
      * @param request a {@link ChargingSessionRequestPayload} request to submit a new charging session
+     * @return completed with the new session once it is journaled
      */
-    ChargingSessionResponsePayload submitChargingSession(ChargingSessionRequestPayload request);
+    CompletableFuture<ChargingSessionResponsePayload> submitChargingSession(ChargingSessionRequestPayload request);
+
+    /**
+     * Submit a new charging session once per idempotency key. A repeated key returns the session submitted with it
+     * first, without submitting a new one, until the key expires
+     *
+     * @param request        a {@link ChargingSessionRequestPayload} request to submit a new charging session
+     * @param idempotencyKey the key chosen by the client for the submit and its retries, or {@code null}
+     * @return completed with the session once it is journaled, or exceptionally with an {@link IllegalArgumentException}
+     * if the key is invalid and an {@link IllegalStateException} if it was used for another station
+     */
+    CompletableFuture<ChargingSessionResponsePayload> submitChargingSession(ChargingSessionRequestPayload request,
+                                                                            String idempotencyKey);
 
     /**
      * Stop an existing started charging session
      *
      * @param sessionId the charging session id
+     * @return completed with the stopped session once it is journaled, or exceptionally with an
+     * {@link IllegalArgumentException} if it is not found and an {@link IllegalStateException} if it is already stopped
+     */
+    CompletableFuture<ChargingSessionResponsePayload> stopChargingSession(UUID sessionId);
+
+    /**
+     * Submit many new charging sessions at once
+     *
+     * @param requests the requests to submit new charging sessions
+     * @return completed with the result of each request, in order, once the new sessions are journaled
      */
-    ChargingSessionResponsePayload stopChargingSession(UUID sessionId);
+    CompletableFuture<List<ChargingSessionBatchResultPayload>> submitChargingSessions(List<ChargingSessionRequestPayload> requests);
 
     /**
-     * Fetch all the charging sessions
+     * Stop many existing started charging sessions at once
+     *
+     * @param sessionIds the charging session ids
+     * @return completed with the result of each session id, in order, once the stopped sessions are journaled
+     */
+    CompletableFuture<List<ChargingSessionBatchResultPayload>> stopChargingSessions(List<String> sessionIds);
+
+    /**
+     * Fetch the charging sessions in progress
+     */
+    Set<ChargingSessionResponsePayload> fetchActiveChargingSessions();
+
+    /**
+     * Fetch all the charging sessions of a station
+     *
+     * @param stationId the id of the station
      */
-    Set<ChargingSessionResponsePayload> fetchChargingSessions();
+    Set<ChargingSessionResponsePayload> fetchChargingSessionsByStation(String stationId);
+
+    /**
+     * Fetch a page of charging sessions
+     *
+     * @param cursor the continuation token of the previous page, or {@code null} for the first page
+     * @param limit  the maximum number of sessions in the page
+     */
+    ChargingSessionPagePayload fetchChargingSessions(String cursor, int limit);
+
+    /**
+     * Visit all the charging sessions straight from the store, without collecting them in memory nor mapping them
+     * to payloads
+     *
+     * @param visitor receives the fields of each session, e.g. to serialize it
+     */
+    void visitChargingSessions(SessionVisitor visitor);
+
+    /**
+     * Fetch the modification version of the charging sessions, increased after every change of the stored sessions
+     */
+    long fetchSessionsVersion();
 
     /**
      * Fetch a summary of charging sessions that are created or updated the last minute
      */
     ChargingSessionSummaryPayload fetchSessionsSummary();
+
+    /**
+     * Fetch the number of charging sessions started and stopped per period of a time range
+     *
+     * @param from        the start of the range, the period containing it is included
+     * @param to          the end of the range, exclusive
+     * @param granularity the width of the periods: minute, hour or day
+     */
+    ChargingSessionHistogramPayload fetchSessionsSummary(Date from, Date to, String granularity);
 }
@@ -1,88 +1,391 @@
 package com.charging.sessions.ccs.service;
 
+import com.charging.sessions.ccs.feed.SessionFeed;
 import com.charging.sessions.ccs.model.ChargingSession;
+import com.charging.sessions.ccs.model.SessionVisitor;
+import com.charging.sessions.ccs.model.StopResult;
+import com.charging.sessions.ccs.model.TimeGranularity;
+import com.charging.sessions.ccs.payload.ChargingSessionBatchResultPayload;
+import com.charging.sessions.ccs.payload.ChargingSessionHistogramPayload;
+import com.charging.sessions.ccs.payload.ChargingSessionPagePayload;
+import com.charging.sessions.ccs.payload.ChargingSessionPeriodPayload;
 import com.charging.sessions.ccs.payload.ChargingSessionRequestPayload;
 import com.charging.sessions.ccs.payload.ChargingSessionResponsePayload;
 import com.charging.sessions.ccs.payload.ChargingSessionSummaryPayload;
 import com.charging.sessions.ccs.repository.ChargingSessionRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
-import java.time.ZonedDateTime;
-import java.util.Date;
-import java.util.Set;
-import java.util.UUID;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
-import static com.charging.sessions.ccs.model.SessionStatus.FINISHED;
-import static com.charging.sessions.ccs.model.SessionStatus.IN_PROGRESS;
-
-
 @Slf4j
 @Service
 public class ChargingSessionServiceImpl implements ChargingSessionService {
 
+    /**
+     * The maximum number of sessions returned in a single page
+     */
+    static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * The maximum number of periods returned in a single summary
+     */
+    static final int MAX_SUMMARY_PERIODS = 10_000;
+
+    /**
+     * The maximum number of items in a single batch request
+     */
+    static final int MAX_BATCH_SIZE = 1000;
+
+    /**
+     * The maximum length of an idempotency key
+     */
+    static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
     private ChargingSessionRepository sessionRepository;
 
-    public ChargingSessionServiceImpl(ChargingSessionRepository sessionRepository) {
+    private final SessionMetrics metrics;
+
+    private final SessionFeed sessionFeed;
+
+    /**
+     * The submits by idempotency key, so that a retried submit returns the session of the first one
+     */
+    private final Cache<String, IdempotentSubmit> idempotentSubmits;
+
+    /**
+     * Counters of the charging sessions started and stopped during the last minute
+     */
+    private final SessionSummaryWindow summaryWindow = new SessionSummaryWindow();
+
+    public ChargingSessionServiceImpl(ChargingSessionRepository sessionRepository, MeterRegistry meterRegistry,
+                                      SessionFeed sessionFeed, IdempotencyProperties idempotencyProperties) {
         this.sessionRepository = sessionRepository;
+        this.metrics = new SessionMetrics(meterRegistry);
+        this.sessionFeed = sessionFeed;
+        this.idempotentSubmits = Caffeine.newBuilder()
+                .maximumSize(idempotencyProperties.getMaximumSize())
+                .expireAfterWrite(idempotencyProperties.getExpireAfter())
+                .build();
     }
 
     @Override
-    public ChargingSessionResponsePayload submitChargingSession(ChargingSessionRequestPayload request) {
-        var session = sessionRepository.addNewSession(request.getStationId());
+    public CompletableFuture<ChargingSessionResponsePayload> submitChargingSession(ChargingSessionRequestPayload request) {
+        return metrics.recordAsync(metrics.submit, () -> {
+            return sessionRepository.addNewSessionAsync(request.getStationId()).thenApply(session -> {
+                summaryWindow.recordStart(session.getStartedAt());
 
-        log.info("A new charging session submitted successfully. Session id: {}", session.getId());
-        return mapToPayload(session);
+                log.info("event=session.started id={} station={}", session.getId(), session.getStationId());
+                var payload = mapToPayload(session);
+                sessionFeed.publish(SessionFeed.SESSION_STARTED, payload);
+                return payload;
+            });
+        });
     }
 
     @Override
-    public ChargingSessionResponsePayload stopChargingSession(UUID sessionId) {
-        // validate that session id is valid
-        var session = sessionRepository.findById(sessionId)
-                .orElseThrow(() -> {
-                    log.error("Charging session with id: {} not found", sessionId);
-                    return new IllegalArgumentException();
-                });
-
-        // validate that the session is IN_PROGRESS status
-        if (!session.getStatus().equals(IN_PROGRESS)) {
-            log.error("Charging session with {} is already stopped", sessionId);
-            throw new IllegalStateException();
+    public CompletableFuture<ChargingSessionResponsePayload> submitChargingSession(ChargingSessionRequestPayload request,
+                                                                                   String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return submitChargingSession(request);
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            log.error("Invalid idempotency key: {}", idempotencyKey);
+            return CompletableFuture.failedFuture(new IllegalArgumentException());
+        }
+
+        // the first submit with a key registers its pending response, the retries wait for it
+        var submit = new IdempotentSubmit(request.getStationId(), new CompletableFuture<>());
+        var firstSubmit = idempotentSubmits.asMap().putIfAbsent(idempotencyKey, submit);
+        if (firstSubmit != null) {
+            if (!firstSubmit.getStationId().equals(request.getStationId())) {
+                // a client error, the key is not deduplicated
+                log.warn("Idempotency key {} was used for station {}", idempotencyKey, firstSubmit.getStationId());
+                return CompletableFuture.failedFuture(new IllegalStateException());
+            }
+            metrics.deduplicated.increment();
+            return firstSubmit.getResponse().copy();
         }
 
-        var stoppedSession = sessionRepository.stopSession(session);
-        log.info("The charging session {} stopped successfully", session.getId());
-        return mapToPayload(stoppedSession);
+        submitChargingSession(request).whenComplete((payload, failure) -> {
+            if (failure != null) {
+                // a failed submit is not remembered, so that it can be retried
+                idempotentSubmits.asMap().remove(idempotencyKey, submit);
+                submit.getResponse().completeExceptionally(failure);
+            } else {
+                submit.getResponse().complete(payload);
+            }
+        });
+        return submit.getResponse().copy();
+    }
+
+    @Override
+    public CompletableFuture<ChargingSessionResponsePayload> stopChargingSession(UUID sessionId) {
+        return metrics.recordAsync(metrics.stop, () -> {
+            return sessionRepository.stopSessionAsync(sessionId).thenApply(result -> {
+                switch (result.getOutcome()) {
+                    case NOT_FOUND:
+                        metrics.notFound.increment();
+                        log.error("Charging session with id: {} not found", sessionId);
+                        throw new IllegalArgumentException();
+                    case ALREADY_STOPPED:
+                        metrics.alreadyStopped.increment();
+                        log.error("Charging session with {} is already stopped", sessionId);
+                        throw new IllegalStateException();
+                    default:
+                        break;
+                }
+
+                var stoppedSession = result.getSession();
+                summaryWindow.recordStop(stoppedSession.getStartedAt(), stoppedSession.getStoppedAt());
+                log.info("event=session.stopped id={} station={}", stoppedSession.getId(), stoppedSession.getStationId());
+                var payload = mapToPayload(stoppedSession);
+                sessionFeed.publish(SessionFeed.SESSION_STOPPED, payload);
+                return payload;
+            });
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<ChargingSessionBatchResultPayload>> submitChargingSessions(
+            List<ChargingSessionRequestPayload> requests) {
+        return metrics.recordAsync(metrics.submitBatch, () -> {
+            checkBatchSize(requests.size());
+
+            // the invalid requests get their result in place, the valid ones are added in one pass
+            var results = new ArrayList<ChargingSessionBatchResultPayload>(requests.size());
+            var stationIds = new ArrayList<String>(requests.size());
+            for (var request : requests) {
+                var stationId = request == null ? null : request.getStationId();
+                if (stationId == null || stationId.isBlank()) {
+                    results.add(new ChargingSessionBatchResultPayload(HttpStatus.BAD_REQUEST.value(), null, null));
+                } else {
+                    results.add(null);
+                    stationIds.add(stationId);
+                }
+            }
+
+            return sessionRepository.addNewSessionsAsync(stationIds).thenApply(newSessions -> {
+                var sessions = newSessions.iterator();
+                for (int i = 0; i < results.size(); i++) {
+                    if (results.get(i) == null) {
+                        var session = sessions.next();
+                        summaryWindow.recordStart(session.getStartedAt());
+                        var payload = mapToPayload(session);
+                        sessionFeed.publish(SessionFeed.SESSION_STARTED, payload);
+                        results.set(i, new ChargingSessionBatchResultPayload(HttpStatus.OK.value(), null, payload));
+                    }
+                }
+
+                log.info("event=sessions.started count={} requested={}", stationIds.size(), requests.size());
+                return results;
+            });
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<ChargingSessionBatchResultPayload>> stopChargingSessions(List<String> sessionIds) {
+        return metrics.recordAsync(metrics.stopBatch, () -> {
+            checkBatchSize(sessionIds.size());
+
+            // the invalid ids are not found, the valid ones are stopped in one pass
+            var results = new ArrayList<ChargingSessionBatchResultPayload>(sessionIds.size());
+            var validIds = new ArrayList<UUID>(sessionIds.size());
+            for (var sessionId : sessionIds) {
+                var validId = parseSessionId(sessionId);
+                if (validId == null) {
+                    metrics.notFound.increment();
+                    results.add(new ChargingSessionBatchResultPayload(HttpStatus.NOT_FOUND.value(), sessionId, null));
+                } else {
+                    results.add(null);
+                    validIds.add(validId);
+                }
+            }
+
+            return sessionRepository.stopSessionsAsync(validIds).thenApply(allStopResults -> {
+                var stopResults = allStopResults.iterator();
+                var stoppedCount = 0;
+                for (int i = 0; i < results.size(); i++) {
+                    if (results.get(i) == null) {
+                        var result = stopResults.next();
+                        results.set(i, mapToBatchResult(sessionIds.get(i), result));
+                        if (result.getOutcome() == StopResult.Outcome.STOPPED) {
+                            summaryWindow.recordStop(result.getSession().getStartedAt(), result.getSession().getStoppedAt());
+                            sessionFeed.publish(SessionFeed.SESSION_STOPPED, results.get(i).getSession());
+                            stoppedCount++;
+                        }
+                    }
+                }
+
+                log.info("event=sessions.stopped count={} requested={}", stoppedCount, sessionIds.size());
+                return results;
+            });
+        });
+    }
+
+    @Override
+    public Set<ChargingSessionResponsePayload> fetchActiveChargingSessions() {
+        return metrics.fetchActive.record(() -> {
+            return sessionRepository.findActiveSessions()
+                    .stream()
+                    .map(this::mapToPayload)
+                    .collect(Collectors.toSet());
+        });
+    }
+
+    @Override
+    public Set<ChargingSessionResponsePayload> fetchChargingSessionsByStation(String stationId) {
+        return metrics.fetchStation.record(() -> {
+            return sessionRepository.findByStationId(stationId)
+                    .stream()
+                    .map(this::mapToPayload)
+                    .collect(Collectors.toSet());
+        });
+    }
+
+    @Override
+    public ChargingSessionPagePayload fetchChargingSessions(String cursor, int limit) {
+        return metrics.fetchPage.record(() -> {
+            if (limit < 1) {
+                log.error("Invalid page size: {}", limit);
+                throw new IllegalArgumentException();
+            }
+            var pageSize = Math.min(limit, MAX_PAGE_SIZE);
+
+            var sessionPage = sessionRepository.findSessionsFrom(decodeCursor(cursor), pageSize);
+            var page = sessionPage.getSessions().stream()
+                    .map(this::mapToPayload)
+                    .collect(Collectors.toList());
+
+            var nextCursor = sessionPage.getNextPosition() < 0 ? null : encodeCursor(sessionPage.getNextPosition());
+            return new ChargingSessionPagePayload(page, nextCursor);
+        });
+    }
+
+    @Override
+    public void visitChargingSessions(SessionVisitor visitor) {
+        metrics.fetch.record(() -> sessionRepository.forEachSession(visitor));
     }
 
     @Override
-    public Set<ChargingSessionResponsePayload> fetchChargingSessions() {
-        return sessionRepository.findAllSessions()
-                .stream()
-                .map(this::mapToPayload)
-                .collect(Collectors.toSet());
+    public long fetchSessionsVersion() {
+        return sessionRepository.modificationVersion();
     }
 
     @Override
     public ChargingSessionSummaryPayload fetchSessionsSummary() {
-        var sessions = sessionRepository.findAllSessions();
-        var lastMinute = Date.from(ZonedDateTime.now().minusMinutes(1).toInstant());
+        return metrics.summary.record(() -> {
+            return summaryWindow.summary(System.currentTimeMillis());
+        });
+    }
+
+    @Override
+    public ChargingSessionHistogramPayload fetchSessionsSummary(Date from, Date to, String granularity) {
+        return metrics.summaryRange.record(() -> {
+            var periodGranularity = parseGranularity(granularity);
+            var firstPeriod = periodGranularity.periodStart(from.getTime());
+            var end = to.getTime();
+            if (end <= from.getTime() || (end - firstPeriod - 1) / periodGranularity.getMillis() >= MAX_SUMMARY_PERIODS) {
+                log.error("Invalid summary range: {} to {} by {}", from, to, granularity);
+                throw new IllegalArgumentException();
+            }
+
+            // the repository skips the periods without activity, they are filled with zero counts
+            var activity = sessionRepository.countSessionsByPeriod(from.getTime(), end, periodGranularity).iterator();
+            var next = activity.hasNext() ? activity.next() : null;
+            var periods = new ArrayList<ChargingSessionPeriodPayload>();
+            for (var periodStart = firstPeriod; periodStart < end; periodStart += periodGranularity.getMillis()) {
+                if (next != null && next.getPeriodStart() == periodStart) {
+                    periods.add(new ChargingSessionPeriodPayload(
+                            new Date(periodStart), next.getStartedCount(), next.getStoppedCount()));
+                    next = activity.hasNext() ? activity.next() : null;
+                } else {
+                    periods.add(new ChargingSessionPeriodPayload(new Date(periodStart), 0, 0));
+                }
+            }
+
+            return new ChargingSessionHistogramPayload(from, to, periodGranularity.name(), periods);
+        });
+    }
+
+    private void checkBatchSize(int size) {
+        if (size > MAX_BATCH_SIZE) {
+            log.error("Batch of {} items exceeds the maximum of {}", size, MAX_BATCH_SIZE);
+            throw new IllegalArgumentException();
+        }
+    }
 
-        var startedCount = sessions.stream()
-                .filter(s -> s.getStatus().equals(IN_PROGRESS))
-                .filter(s -> s.getStartedAt().after(lastMinute))
-                .count();
+    private UUID parseSessionId(String sessionId) {
+        try {
+            return sessionId == null ? null : UUID.fromString(sessionId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private ChargingSessionBatchResultPayload mapToBatchResult(String sessionId, StopResult result) {
+        switch (result.getOutcome()) {
+            case NOT_FOUND:
+                metrics.notFound.increment();
+                return new ChargingSessionBatchResultPayload(HttpStatus.NOT_FOUND.value(), sessionId, null);
+            case ALREADY_STOPPED:
+                metrics.alreadyStopped.increment();
+                return new ChargingSessionBatchResultPayload(HttpStatus.BAD_REQUEST.value(), sessionId, null);
+            default:
+                return new ChargingSessionBatchResultPayload(HttpStatus.OK.value(), null, mapToPayload(result.getSession()));
+        }
+    }
+
+    private TimeGranularity parseGranularity(String granularity) {
+        try {
+            return TimeGranularity.valueOf(granularity.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid summary granularity: {}", granularity);
+            throw e;
+        }
+    }
+
+    /**
+     * Encode the stored position the next page starts from as an opaque URL-safe continuation token
+     */
+    private String encodeCursor(int position) {
+        var bytes = ByteBuffer.allocate(4).putInt(position).array();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private int decodeCursor(String cursor) {
+        if (cursor == null) {
+            return 0;
+        }
+
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(cursor);
+        } catch (IllegalArgumentException e) {
+            bytes = new byte[0];
+        }
+        var position = bytes.length == 4 ? ByteBuffer.wrap(bytes).getInt() : -1;
+        if (position < 0) {
+            log.error("Invalid page cursor: {}", cursor);
+            throw new IllegalArgumentException();
+        }
+        return position;
+    }
 
-        var finishedCount = sessions.stream()
-                .filter(s -> s.getStatus().equals(FINISHED))
-                .filter(s -> s.getStoppedAt() != null)
-                .filter(s -> s.getStoppedAt().after(lastMinute))
-                .count();
+    @Value
+    private static class IdempotentSubmit {
 
-        var totalCount = startedCount + finishedCount;
+        private String stationId;
 
-        return new ChargingSessionSummaryPayload(totalCount, startedCount, finishedCount);
+        private CompletableFuture<ChargingSessionResponsePayload> response;
     }
 
     private ChargingSessionResponsePayload mapToPayload(ChargingSession session) {
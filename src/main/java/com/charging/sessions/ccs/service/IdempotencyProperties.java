@@ -0,0 +1,21 @@
+package com.charging.sessions.ccs.service;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "ccs.idempotency")
+public class IdempotencyProperties {
+
+    /**
+     * The maximum number of idempotency keys remembered, beyond it the least used ones are forgotten
+     */
+    private long maximumSize = 100_000;
+
+    /**
+     * The time during which a repeated idempotency key returns the session of the first request
+     */
+    private Duration expireAfter = Duration.ofMinutes(10);
+}
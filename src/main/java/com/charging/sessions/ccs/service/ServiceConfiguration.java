@@ -0,0 +1,9 @@
+package com.charging.sessions.ccs.service;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties({IdempotencyProperties.class, AnalyticsProperties.class})
+public class ServiceConfiguration {
+}
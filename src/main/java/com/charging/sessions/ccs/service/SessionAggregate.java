@@ -0,0 +1,201 @@
+package com.charging.sessions.ccs.service;
+
+import com.charging.sessions.ccs.model.SessionVisitor;
+import com.charging.sessions.ccs.model.TimeGranularity;
+import com.charging.sessions.ccs.payload.ChargingSessionAnalyticsPayload;
+import com.charging.sessions.ccs.payload.ChargingSessionConcurrencyPayload;
+import com.charging.sessions.ccs.payload.ChargingSessionDurationsPayload;
+import org.HdrHistogram.Histogram;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aggregates of the sessions of a range of stored positions, merged with the aggregates of the other ranges.
+ * <p>
+ * The charge durations are recorded in a histogram with 3 significant digits, so that merging costs the number of
+ * buckets rather than the number of sessions and the percentiles are within 0.1%. A session is in progress during
+ * every minute from the one it started in to the one it stopped in. The changes of the number of sessions in progress
+ * are kept per minute in ascending order, so that two aggregates are merged in a single pass and the peak is found
+ * by summing the changes.
+ */
+class SessionAggregate implements SessionVisitor {
+
+    private static final long MINUTE = TimeGranularity.MINUTE.getMillis();
+
+    private static final long[] EMPTY = new long[0];
+
+    private long sessionCount;
+
+    private final Map<String, long[]> sessionsByStation = new HashMap<>();
+
+    private final Histogram durations = new Histogram(3);
+
+    private long durationSum;
+
+    private long minDuration = Long.MAX_VALUE;
+
+    private long maxDuration;
+
+    /**
+     * The minutes the visited sessions started in, until sorted by {@link #complete()}
+     */
+    private long[] starts = EMPTY;
+
+    private int startCount;
+
+    /**
+     * The minutes following the ones the visited sessions stopped in, until sorted by {@link #complete()}
+     */
+    private long[] stops = EMPTY;
+
+    private int stopCount;
+
+    /**
+     * The minutes the number of sessions in progress changes in, ascending
+     */
+    private long[] minutes = EMPTY;
+
+    /**
+     * The change of the number of sessions in progress in each of the minutes
+     */
+    private long[] changes = EMPTY;
+
+    private int changeCount;
+
+    @Override
+    public void visit(long idHi, long idLo, String stationId, long startedAt, long stoppedAt) {
+        sessionCount++;
+        sessionsByStation.computeIfAbsent(stationId, station -> new long[1])[0]++;
+
+        if (startCount == starts.length) {
+            starts = Arrays.copyOf(starts, Math.max(16, startCount * 2));
+        }
+        starts[startCount++] = Math.floorDiv(startedAt, MINUTE);
+
+        if (stoppedAt != 0) {
+            // a clock set back between the start and the stop is not a negative duration
+            long duration = Math.max(stoppedAt - startedAt, 0);
+            durations.recordValue(duration);
+            durationSum += duration;
+            minDuration = Math.min(minDuration, duration);
+            maxDuration = Math.max(maxDuration, duration);
+
+            if (stopCount == stops.length) {
+                stops = Arrays.copyOf(stops, Math.max(16, stopCount * 2));
+            }
+            stops[stopCount++] = Math.floorDiv(startedAt + duration, MINUTE) + 1;
+        }
+    }
+
+    /**
+     * Turn the starts and stops visited into the changes per minute, once all the sessions of the range are visited
+     */
+    SessionAggregate complete() {
+        Arrays.sort(starts, 0, startCount);
+        Arrays.sort(stops, 0, stopCount);
+        minutes = new long[startCount + stopCount];
+        changes = new long[startCount + stopCount];
+
+        int start = 0;
+        int stop = 0;
+        while (start < startCount || stop < stopCount) {
+            long minute = Math.min(start < startCount ? starts[start] : Long.MAX_VALUE,
+                    stop < stopCount ? stops[stop] : Long.MAX_VALUE);
+            long change = 0;
+            for (; start < startCount && starts[start] == minute; start++) {
+                change++;
+            }
+            for (; stop < stopCount && stops[stop] == minute; stop++) {
+                change--;
+            }
+            addChange(minute, change);
+        }
+
+        starts = EMPTY;
+        stops = EMPTY;
+        startCount = 0;
+        stopCount = 0;
+        return this;
+    }
+
+    /**
+     * Add the aggregates of another range to these ones
+     *
+     * @param other the completed aggregates of another range
+     * @return these aggregates
+     */
+    SessionAggregate merge(SessionAggregate other) {
+        sessionCount += other.sessionCount;
+        other.sessionsByStation.forEach((stationId, count) ->
+                sessionsByStation.computeIfAbsent(stationId, station -> new long[1])[0] += count[0]);
+        durations.add(other.durations);
+        durationSum += other.durationSum;
+        minDuration = Math.min(minDuration, other.minDuration);
+        maxDuration = Math.max(maxDuration, other.maxDuration);
+
+        long[] ownMinutes = minutes;
+        long[] ownChanges = changes;
+        int ownCount = changeCount;
+        minutes = new long[ownCount + other.changeCount];
+        changes = new long[ownCount + other.changeCount];
+        changeCount = 0;
+
+        int own = 0;
+        int others = 0;
+        while (own < ownCount || others < other.changeCount) {
+            if (others == other.changeCount || own < ownCount && ownMinutes[own] < other.minutes[others]) {
+                addChange(ownMinutes[own], ownChanges[own]);
+                own++;
+            } else if (own == ownCount || other.minutes[others] < ownMinutes[own]) {
+                addChange(other.minutes[others], other.changes[others]);
+                others++;
+            } else {
+                addChange(ownMinutes[own], ownChanges[own] + other.changes[others]);
+                own++;
+                others++;
+            }
+        }
+        return this;
+    }
+
+    ChargingSessionAnalyticsPayload toPayload() {
+        var stations = new TreeMap<String, Long>();
+        sessionsByStation.forEach((stationId, count) -> stations.put(stationId, count[0]));
+
+        long finishedCount = durations.getTotalCount();
+        var durationsPayload = new ChargingSessionDurationsPayload(finishedCount,
+                finishedCount == 0 ? 0 : (double) durationSum / finishedCount,
+                finishedCount == 0 ? 0 : minDuration,
+                durations.getValueAtPercentile(50), durations.getValueAtPercentile(90),
+                durations.getValueAtPercentile(95), durations.getValueAtPercentile(99), maxDuration);
+
+        // the number of sessions in progress during a minute is the sum of the changes up to it
+        long inProgress = 0;
+        long peakCount = 0;
+        long peakMinute = 0;
+        for (int i = 0; i < changeCount; i++) {
+            inProgress += changes[i];
+            if (inProgress > peakCount) {
+                peakCount = inProgress;
+                peakMinute = minutes[i];
+            }
+        }
+        var concurrencyPayload = peakCount == 0 ? new ChargingSessionConcurrencyPayload(0, null, null)
+                : new ChargingSessionConcurrencyPayload(peakCount,
+                new Date(peakMinute * MINUTE), new Date((peakMinute + 1) * MINUTE));
+
+        return new ChargingSessionAnalyticsPayload(sessionCount, stations, durationsPayload, concurrencyPayload);
+    }
+
+    private void addChange(long minute, long change) {
+        // the minutes where as many sessions start as stop do not change the peak
+        if (change != 0) {
+            minutes[changeCount] = minute;
+            changes[changeCount++] = change;
+        }
+    }
+}
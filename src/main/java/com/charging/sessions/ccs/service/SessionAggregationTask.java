@@ -0,0 +1,43 @@
+package com.charging.sessions.ccs.service;
+
+import com.charging.sessions.ccs.repository.ChargingSessionRepository;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Aggregate the sessions of a range of stored positions, split in halves aggregated in parallel down to ranges of at
+ * most a chunk, whose aggregates are merged on the way back
+ */
+class SessionAggregationTask extends RecursiveTask<SessionAggregate> {
+
+    private final ChargingSessionRepository sessionRepository;
+
+    private final int fromPosition;
+
+    private final int toPosition;
+
+    private final int chunkSize;
+
+    SessionAggregationTask(ChargingSessionRepository sessionRepository, int fromPosition, int toPosition,
+                           int chunkSize) {
+        this.sessionRepository = sessionRepository;
+        this.fromPosition = fromPosition;
+        this.toPosition = toPosition;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    protected SessionAggregate compute() {
+        if (toPosition - fromPosition <= chunkSize) {
+            var aggregate = new SessionAggregate();
+            sessionRepository.forEachSession(fromPosition, toPosition, aggregate);
+            return aggregate.complete();
+        }
+
+        int middle = fromPosition + (toPosition - fromPosition) / 2;
+        var first = new SessionAggregationTask(sessionRepository, fromPosition, middle, chunkSize);
+        first.fork();
+        var second = new SessionAggregationTask(sessionRepository, middle, toPosition, chunkSize).compute();
+        return first.join().merge(second);
+    }
+}
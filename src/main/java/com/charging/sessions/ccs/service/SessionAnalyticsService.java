@@ -0,0 +1,16 @@
+package com.charging.sessions.ccs.service;
+
+import com.charging.sessions.ccs.payload.ChargingSessionAnalyticsPayload;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface SessionAnalyticsService {
+
+    /**
+     * Aggregate the whole history of the stored charging sessions: the sessions per station, the charge durations
+     * and the peak of the sessions in progress during a same minute
+     *
+     * @return completed with the aggregates once all the sessions are visited, off the calling thread
+     */
+    CompletableFuture<ChargingSessionAnalyticsPayload> fetchSessionsAnalytics();
+}
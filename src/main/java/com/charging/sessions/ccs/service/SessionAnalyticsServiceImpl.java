@@ -0,0 +1,105 @@
+package com.charging.sessions.ccs.service;
+
+import com.charging.sessions.ccs.payload.ChargingSessionAnalyticsPayload;
+import com.charging.sessions.ccs.repository.ChargingSessionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Whole-history aggregates of the charging sessions, computed on a dedicated fork-join pool so that neither the
+ * request threads nor the common pool are held by a scan of the store.
+ * <p>
+ * The stored positions are split in chunks aggregated in parallel, see {@link SessionAggregationTask}. While an
+ * aggregation is running the requests share it, so that at most one scans the store at a time, and once it is done
+ * its result is served again until the sessions are modified.
+ */
+@Slf4j
+@Service
+public class SessionAnalyticsServiceImpl implements SessionAnalyticsService, Closeable {
+
+    private final ChargingSessionRepository sessionRepository;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Timer timer;
+
+    private final ForkJoinPool pool;
+
+    private final int chunkSize;
+
+    /**
+     * The last aggregation started, guarded by the service
+     */
+    private Aggregation lastAggregation;
+
+    public SessionAnalyticsServiceImpl(ChargingSessionRepository sessionRepository, MeterRegistry meterRegistry,
+                                       AnalyticsProperties analyticsProperties) {
+        this.sessionRepository = sessionRepository;
+        this.meterRegistry = meterRegistry;
+        this.timer = SessionMetrics.timer(meterRegistry, "analytics");
+        this.chunkSize = analyticsProperties.getChunkSize();
+        int parallelism = analyticsProperties.getParallelism() > 0 ? analyticsProperties.getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("session-analytics-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    @Override
+    public CompletableFuture<ChargingSessionAnalyticsPayload> fetchSessionsAnalytics() {
+        // read before the sessions, so that a modification during the scan is not missed by the next request
+        long version = sessionRepository.modificationVersion();
+        Aggregation aggregation;
+        synchronized (this) {
+            var last = lastAggregation;
+            if (last == null || last.getResult().isCompletedExceptionally()
+                    || last.getResult().isDone() && last.getVersion() != version) {
+                lastAggregation = new Aggregation(version, aggregate());
+            }
+            aggregation = lastAggregation;
+        }
+        // a copy, so that a caller cannot complete the shared result
+        return aggregation.getResult().copy();
+    }
+
+    private CompletableFuture<ChargingSessionAnalyticsPayload> aggregate() {
+        var sample = Timer.start(meterRegistry);
+        return CompletableFuture.supplyAsync(() -> {
+            int positionLimit = sessionRepository.sessionPositionLimit();
+            var payload = new SessionAggregationTask(sessionRepository, 0, positionLimit, chunkSize).invoke()
+                    .toPayload();
+            log.info("Aggregated {} charging sessions", payload.getTotalCount());
+            return payload;
+        }, pool).whenComplete((result, failure) -> {
+            sample.stop(timer);
+            if (failure != null) {
+                log.error("Failed to aggregate the charging sessions", failure);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    @Value
+    private static class Aggregation {
+
+        /**
+         * The modification version of the sessions read before the aggregation started
+         */
+        private long version;
+
+        private CompletableFuture<ChargingSessionAnalyticsPayload> result;
+    }
+}
@@ -0,0 +1,97 @@
+package com.charging.sessions.ccs.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Timers of the charging session operations and counters of the rejected stops and of the deduplicated submits.
+ * <p>
+ * Every operation is timed under the same {@value #OPERATIONS} name, tagged with the operation,
+ * and publishes a percentile histogram so that latency percentiles can be aggregated by the scraper.
+ */
+class SessionMetrics {
+
+    static final String OPERATIONS = "ccs.sessions.operations";
+    static final String REJECTED_STOPS = "ccs.sessions.stops.rejected";
+    static final String DEDUPLICATED_SUBMITS = "ccs.sessions.submits.deduplicated";
+
+    private final MeterRegistry registry;
+
+    final Timer submit;
+    final Timer submitBatch;
+    final Timer stop;
+    final Timer stopBatch;
+    final Timer fetch;
+    final Timer fetchActive;
+    final Timer fetchStation;
+    final Timer fetchPage;
+    final Timer summary;
+    final Timer summaryRange;
+
+    /**
+     * Stops of unknown sessions
+     */
+    final Counter notFound;
+
+    /**
+     * Stops of sessions already stopped
+     */
+    final Counter alreadyStopped;
+
+    /**
+     * Submits answered with the session of a previous submit with the same idempotency key
+     */
+    final Counter deduplicated;
+
+    SessionMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        submit = timer(registry, "submit");
+        submitBatch = timer(registry, "submit.batch");
+        stop = timer(registry, "stop");
+        stopBatch = timer(registry, "stop.batch");
+        fetch = timer(registry, "fetch");
+        fetchActive = timer(registry, "fetch.active");
+        fetchStation = timer(registry, "fetch.station");
+        fetchPage = timer(registry, "fetch.page");
+        summary = timer(registry, "summary");
+        summaryRange = timer(registry, "summary.range");
+        notFound = rejectedStops(registry, "not_found");
+        alreadyStopped = rejectedStops(registry, "already_stopped");
+        deduplicated = registry.counter(DEDUPLICATED_SUBMITS);
+    }
+
+    /**
+     * Time an asynchronous operation until its future completes, a synchronous failure completes it exceptionally
+     *
+     * @param timer     the timer of the operation
+     * @param operation starts the operation
+     */
+    <T> CompletableFuture<T> recordAsync(Timer timer, Supplier<CompletableFuture<T>> operation) {
+        var sample = Timer.start(registry);
+        CompletableFuture<T> future;
+        try {
+            future = operation.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((result, failure) -> sample.stop(timer));
+    }
+
+    static Timer timer(MeterRegistry registry, String operation) {
+        return Timer.builder(OPERATIONS)
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+    }
+
+    private static Counter rejectedStops(MeterRegistry registry, String reason) {
+        return Counter.builder(REJECTED_STOPS)
+                .tag("reason", reason)
+                .register(registry);
+    }
+}
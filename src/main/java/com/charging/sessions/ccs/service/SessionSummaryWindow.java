@@ -0,0 +1,125 @@
+package com.charging.sessions.ccs.service;
+
+import com.charging.sessions.ccs.payload.ChargingSessionSummaryPayload;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sliding window of started and stopped charging session counters covering the last minute.
+ * <p>
+ * The window is a ring buffer of one bucket per second. Writers only touch the bucket of the second
+ * the event happened in, and a summary reads the 60 buckets, so its cost does not depend on the number of stored sessions.
+ * A session stopped within the window is moved from the started to the stopped count, the same way
+ * a session leaves the {@code IN_PROGRESS} state once it is stopped.
+ */
+class SessionSummaryWindow {
+
+    static final int WINDOW_SECONDS = 60;
+
+    private final Bucket[] buckets = new Bucket[WINDOW_SECONDS];
+
+    SessionSummaryWindow() {
+        for (int i = 0; i < WINDOW_SECONDS; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    /**
+     * Count a charging session that has been started
+     *
+     * @param startedAt the start time of the session
+     */
+    void recordStart(Date startedAt) {
+        var bucket = bucketFor(toSecond(startedAt));
+        if (bucket != null) {
+            bucket.started.increment();
+        }
+    }
+
+    /**
+     * Count a charging session that has been stopped
+     *
+     * @param startedAt the start time of the session
+     * @param stoppedAt the stop time of the session
+     */
+    void recordStop(Date startedAt, Date stoppedAt) {
+        // the session is no longer in progress, so it leaves the started count if it is still in the window
+        var startSecond = toSecond(startedAt);
+        var startBucket = buckets[index(startSecond)];
+        if (startBucket.second == startSecond) {
+            startBucket.started.decrement();
+        }
+
+        var stopBucket = bucketFor(toSecond(stoppedAt));
+        if (stopBucket != null) {
+            stopBucket.stopped.increment();
+        }
+    }
+
+    /**
+     * Build a summary of the charging sessions started or stopped during the last minute
+     *
+     * @param now the current time in epoch millis
+     */
+    ChargingSessionSummaryPayload summary(long now) {
+        var nowSecond = TimeUnit.MILLISECONDS.toSeconds(now);
+        long startedCount = 0;
+        long stoppedCount = 0;
+
+        for (var bucket : buckets) {
+            var second = bucket.second;
+            if (second > nowSecond - WINDOW_SECONDS && second <= nowSecond) {
+                startedCount += bucket.started.sum();
+                stoppedCount += bucket.stopped.sum();
+            }
+        }
+
+        // concurrent stops may briefly be seen before their start
+        startedCount = Math.max(startedCount, 0);
+        stoppedCount = Math.max(stoppedCount, 0);
+        return new ChargingSessionSummaryPayload(startedCount + stoppedCount, startedCount, stoppedCount);
+    }
+
+    /**
+     * Return the bucket of the given second, recycling it if it still holds an older second.
+     * Returns {@code null} when the bucket has already moved on to a newer second
+     */
+    private Bucket bucketFor(long second) {
+        var bucket = buckets[index(second)];
+        if (bucket.second != second) {
+            synchronized (bucket) {
+                if (bucket.second > second) {
+                    return null;
+                }
+                if (bucket.second < second) {
+                    bucket.started.reset();
+                    bucket.stopped.reset();
+                    bucket.second = second;
+                }
+            }
+        }
+        return bucket;
+    }
+
+    private static int index(long second) {
+        return (int) Math.floorMod(second, (long) WINDOW_SECONDS);
+    }
+
+    private static long toSecond(Date date) {
+        return TimeUnit.MILLISECONDS.toSeconds(date.getTime());
+    }
+
+    private static class Bucket {
+
+        /**
+         * The epoch second the counters of the bucket belong to
+         */
+        private volatile long second = Long.MIN_VALUE;
+
+        private final LongAdder started = new LongAdder();
+
+        private final LongAdder stopped = new LongAdder();
+    }
+}
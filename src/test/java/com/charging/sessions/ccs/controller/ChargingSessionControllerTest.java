@@ -1,34 +1,59 @@
 package com.charging.sessions.ccs.controller;
 
+import com.charging.sessions.ccs.feed.SessionFeed;
+import com.charging.sessions.ccs.model.SessionVisitor;
+import com.charging.sessions.ccs.payload.ChargingSessionBatchResultPayload;
+import com.charging.sessions.ccs.payload.ChargingSessionHistogramPayload;
+import com.charging.sessions.ccs.payload.ChargingSessionPagePayload;
+import com.charging.sessions.ccs.payload.ChargingSessionPeriodPayload;
 import com.charging.sessions.ccs.payload.ChargingSessionRequestPayload;
 import com.charging.sessions.ccs.payload.ChargingSessionResponsePayload;
 import com.charging.sessions.ccs.payload.ChargingSessionSummaryPayload;
 import com.charging.sessions.ccs.service.ChargingSessionService;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.web.context.WebApplicationContext;
 
+import java.nio.ByteBuffer;
 import java.time.ZonedDateTime;
 import java.util.Date;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
+import static com.charging.sessions.ccs.controller.ChargingSessionController.APPLICATION_NDJSON_VALUE;
 import static com.charging.sessions.ccs.model.SessionStatus.FINISHED;
 import static com.charging.sessions.ccs.model.SessionStatus.IN_PROGRESS;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.http.MediaType.APPLICATION_CBOR;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
 @RunWith(SpringRunner.class)
@@ -41,8 +66,14 @@ public class ChargingSessionControllerTest {
     @Autowired
     private WebApplicationContext webApplicationContext;
 
+    @Autowired
+    private SessionFeed sessionFeed;
+
     private MockMvc mockMvc;
+
+    private static final AtomicLong nextVersion = new AtomicLong();
     private ObjectMapper objectMapper = new ObjectMapper();
+    private ObjectMapper cborMapper = new CBORMapper();
 
     @Before
     public void setUp() {
@@ -53,10 +84,10 @@ public class ChargingSessionControllerTest {
     public void testAddSession() throws Exception {
         ChargingSessionResponsePayload responsePayload = getNewChargingSessionPayload("stationA");
 
-        when(chargingSessionService.submitChargingSession(any())).thenReturn(responsePayload);
+        when(chargingSessionService.submitChargingSession(any(), any())).thenReturn(completedFuture(responsePayload));
 
         String body = objectMapper.writeValueAsString(new ChargingSessionRequestPayload("stationA"));
-        this.mockMvc.perform(post("/chargingSessions")
+        performAsync(post("/chargingSessions")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(body))
                 .andExpect(status().isOk())
@@ -64,6 +95,18 @@ public class ChargingSessionControllerTest {
                 .andExpect(jsonPath("$.stationId").value(responsePayload.getStationId()));
     }
 
+    @Test
+    public void testAddSessionWithIdempotencyKeyOfAnotherStation() throws Exception {
+        when(chargingSessionService.submitChargingSession(any(), eq("key"))).thenReturn(failedFuture(new IllegalStateException()));
+
+        String body = objectMapper.writeValueAsString(new ChargingSessionRequestPayload("stationB"));
+        performAsync(post("/chargingSessions")
+                .header("Idempotency-Key", "key")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
     @Test
     public void testAddSessionWithBlankStationId() throws Exception {
         String body = objectMapper.writeValueAsString(new ChargingSessionRequestPayload(""));
@@ -77,9 +120,9 @@ public class ChargingSessionControllerTest {
     public void testStopSessionSuccessfully() throws Exception {
         ChargingSessionResponsePayload responsePayload = getStoppedChargingSessionPayload("stationA");
 
-        when(chargingSessionService.stopChargingSession(any())).thenReturn(responsePayload);
+        when(chargingSessionService.stopChargingSession(any())).thenReturn(completedFuture(responsePayload));
 
-        this.mockMvc.perform(put("/chargingSessions/" + responsePayload.getId()))
+        performAsync(put("/chargingSessions/" + responsePayload.getId()))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value(responsePayload.getId()))
                 .andExpect(jsonPath("$.status").value(FINISHED.name()))
@@ -87,39 +130,256 @@ public class ChargingSessionControllerTest {
                 .andExpect(jsonPath("$.stationId").value(responsePayload.getStationId()));
     }
 
+    @Test
+    public void testAddSessionsInBatch() throws Exception {
+        ChargingSessionResponsePayload responsePayload = getNewChargingSessionPayload("stationA");
+
+        when(chargingSessionService.submitChargingSessions(any())).thenReturn(completedFuture(List.of(
+                new ChargingSessionBatchResultPayload(200, null, responsePayload),
+                new ChargingSessionBatchResultPayload(400, null, null))));
+
+        String body = objectMapper.writeValueAsString(List.of(
+                new ChargingSessionRequestPayload("stationA"), new ChargingSessionRequestPayload("")));
+        performAsync(post("/chargingSessions/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("[0].status").value(200))
+                .andExpect(jsonPath("[0].session.id").value(responsePayload.getId()))
+                .andExpect(jsonPath("[1].status").value(400));
+    }
+
+    @Test
+    public void testStopSessionsInBatch() throws Exception {
+        ChargingSessionResponsePayload responsePayload = getStoppedChargingSessionPayload("stationA");
+        String unknownId = UUID.randomUUID().toString();
+
+        when(chargingSessionService.stopChargingSessions(List.of(responsePayload.getId(), unknownId))).thenReturn(
+                completedFuture(List.of(new ChargingSessionBatchResultPayload(200, null, responsePayload),
+                        new ChargingSessionBatchResultPayload(404, unknownId, null))));
+
+        String body = objectMapper.writeValueAsString(List.of(responsePayload.getId(), unknownId));
+        performAsync(put("/chargingSessions/batch/stop")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("[0].session.status").value(FINISHED.name()))
+                .andExpect(jsonPath("[1].status").value(404))
+                .andExpect(jsonPath("[1].id").value(unknownId));
+    }
+
+    @Test
+    public void testStopSessionsInBatchAsCbor() throws Exception {
+        ChargingSessionResponsePayload responsePayload = getStoppedChargingSessionPayload("stationA");
+
+        when(chargingSessionService.stopChargingSessions(List.of(responsePayload.getId(), "invalidId"))).thenReturn(
+                completedFuture(List.of(new ChargingSessionBatchResultPayload(200, null, responsePayload),
+                        new ChargingSessionBatchResultPayload(404, "invalidId", null))));
+
+        byte[] body = performAsync(put("/chargingSessions/batch/stop")
+                .contentType(APPLICATION_CBOR)
+                .accept(APPLICATION_CBOR)
+                .content(cborMapper.writeValueAsBytes(List.of(responsePayload.getId(), "invalidId"))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode results = cborMapper.readTree(body);
+        assertEquals(responsePayload.getId(), toUUID(results.get(0).get("session").get("id").binaryValue()).toString());
+        assertEquals(responsePayload.getStoppedAt().getTime(), results.get(0).get("session").get("stoppedAt").longValue());
+        assertEquals("invalidId", results.get(1).get("id").textValue());
+    }
+
     @Test
     public void testStopSessionWithInvalidUUID() throws Exception {
-        this.mockMvc.perform(put("/chargingSessions/invalidId"))
+        performAsync(put("/chargingSessions/invalidId"))
                 .andExpect(status().isNotFound());
     }
 
     @Test
     public void testStopSessionOnAlreadyStoppedSession() throws Exception {
-        when(chargingSessionService.stopChargingSession(any())).thenThrow(IllegalStateException.class);
+        when(chargingSessionService.stopChargingSession(any())).thenReturn(failedFuture(new IllegalStateException()));
 
-        this.mockMvc.perform(put("/chargingSessions/" + UUID.randomUUID()))
+        performAsync(put("/chargingSessions/" + UUID.randomUUID()))
                 .andExpect(status().isBadRequest());
     }
 
     @Test
     public void testStopSessionOnNotFoundSession() throws Exception {
-        when(chargingSessionService.stopChargingSession(any())).thenThrow(IllegalArgumentException.class);
+        when(chargingSessionService.stopChargingSession(any())).thenReturn(failedFuture(new IllegalArgumentException()));
 
-        this.mockMvc.perform(put("/chargingSessions/" + UUID.randomUUID()))
+        performAsync(put("/chargingSessions/" + UUID.randomUUID()))
                 .andExpect(status().isNotFound());
     }
 
     @Test
     public void testFetchSessions() throws Exception {
-        Set<ChargingSessionResponsePayload> sessions = new HashSet<>();
         ChargingSessionResponsePayload responsePayload = getNewChargingSessionPayload("stationA");
-        sessions.add(responsePayload);
+        ChargingSessionResponsePayload stoppedPayload = getStoppedChargingSessionPayload("stationB");
 
-        when(chargingSessionService.fetchChargingSessions()).thenReturn(sessions);
+        visitChargingSessions(responsePayload, stoppedPayload);
 
-        this.mockMvc.perform(get("/chargingSessions"))
+        performAsync(get("/chargingSessions"))
                 .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("[0].id").value(responsePayload.getId()))
+                .andExpect(jsonPath("[0].stoppedAt").doesNotExist())
+                .andExpect(jsonPath("[0].status").value(IN_PROGRESS.name()))
+                .andExpect(jsonPath("[1].id").value(stoppedPayload.getId()))
+                .andExpect(jsonPath("[1].stationId").value("stationB"))
+                .andExpect(jsonPath("[1].status").value(FINISHED.name()));
+    }
+
+    @Test
+    public void testFetchSessionsAsCbor() throws Exception {
+        ChargingSessionResponsePayload responsePayload = getNewChargingSessionPayload("stationA");
+
+        visitChargingSessions(responsePayload);
+
+        byte[] body = performAsync(get("/chargingSessions").accept(APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // the timestamps are epoch milliseconds and the id is its 16 bytes
+        JsonNode session = cborMapper.readTree(body).get(0);
+        assertEquals(responsePayload.getId(), toUUID(session.get("id").binaryValue()).toString());
+        assertEquals(responsePayload.getStartedAt().getTime(), session.get("startedAt").longValue());
+        assertEquals("stationA", session.get("stationId").textValue());
+    }
+
+    @Test
+    public void testFetchSessionsDefaultsToJson() throws Exception {
+        ChargingSessionResponsePayload responsePayload = getNewChargingSessionPayload("stationA");
+
+        visitChargingSessions(responsePayload);
+
+        performAsync(get("/chargingSessions").accept(MediaType.APPLICATION_JSON, APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("[0].id").value(responsePayload.getId()));
+    }
+
+    @Test
+    public void testFetchSessionsNotModified() throws Exception {
+        visitChargingSessions(getNewChargingSessionPayload("stationA"));
+
+        String etag = performAsync(get("/chargingSessions"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        this.mockMvc.perform(get("/chargingSessions").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+        // the tag differs by media type
+        performAsync(get("/chargingSessions").accept(APPLICATION_CBOR).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        verify(chargingSessionService, times(2)).visitChargingSessions(any());
+
+        // a change of the sessions changes the tag
+        visitChargingSessions(getNewChargingSessionPayload("stationB"));
+        performAsync(get("/chargingSessions").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("[0].stationId").value("stationB"));
+    }
+
+    @Test
+    public void testFetchSessionsFromCache() throws Exception {
+        ChargingSessionResponsePayload responsePayload = getNewChargingSessionPayload("stationA");
+        visitChargingSessions(responsePayload);
+
+        String body = performAsync(get("/chargingSessions"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        performAsync(get("/chargingSessions"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(body))
                 .andExpect(jsonPath("[0].id").value(responsePayload.getId()));
+
+        verify(chargingSessionService, times(1)).visitChargingSessions(any());
+    }
+
+    @Test
+    public void testFetchSessionsNotAcceptable() throws Exception {
+        this.mockMvc.perform(get("/chargingSessions").accept(MediaType.TEXT_PLAIN))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    @Test
+    public void testFetchActiveSessions() throws Exception {
+        ChargingSessionResponsePayload responsePayload = getNewChargingSessionPayload("stationA");
+
+        when(chargingSessionService.fetchActiveChargingSessions()).thenReturn(Set.of(responsePayload));
+
+        this.mockMvc.perform(get("/chargingSessions/active"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("[0].id").value(responsePayload.getId()))
+                .andExpect(jsonPath("[0].status").value(IN_PROGRESS.name()));
+    }
+
+    @Test
+    public void testFetchStationSessions() throws Exception {
+        ChargingSessionResponsePayload responsePayload = getNewChargingSessionPayload("stationA");
+
+        when(chargingSessionService.fetchChargingSessionsByStation("stationA")).thenReturn(Set.of(responsePayload));
+
+        this.mockMvc.perform(get("/chargingSessions").param("stationId", "stationA"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("[0].id").value(responsePayload.getId()))
+                .andExpect(jsonPath("[0].stationId").value("stationA"));
+    }
+
+    @Test
+    public void testFetchSessionsPage() throws Exception {
+        ChargingSessionResponsePayload responsePayload = getNewChargingSessionPayload("stationA");
+        ChargingSessionPagePayload page = new ChargingSessionPagePayload(List.of(responsePayload), "nextCursor");
+
+        when(chargingSessionService.fetchChargingSessions(null, 1)).thenReturn(page);
+
+        this.mockMvc.perform(get("/chargingSessions").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sessions[0].id").value(responsePayload.getId()))
+                .andExpect(jsonPath("$.nextCursor").value("nextCursor"));
+    }
+
+    @Test
+    public void testFetchSessionsPageWithInvalidCursor() throws Exception {
+        when(chargingSessionService.fetchChargingSessions(eq("invalid"), anyInt())).thenThrow(IllegalArgumentException.class);
+
+        this.mockMvc.perform(get("/chargingSessions").param("limit", "10").param("cursor", "invalid"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testStreamSessions() throws Exception {
+        ChargingSessionResponsePayload payloadA = getNewChargingSessionPayload("stationA");
+        ChargingSessionResponsePayload payloadB = getNewChargingSessionPayload("stationB");
+
+        visitChargingSessions(payloadA, payloadB);
+
+        MvcResult result = this.mockMvc.perform(get("/chargingSessions").accept(APPLICATION_NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_NDJSON_VALUE))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(payloadA.getId(), objectMapper.readValue(lines[0], ChargingSessionResponsePayload.class).getId());
+        assertEquals(payloadB.getId(), objectMapper.readValue(lines[1], ChargingSessionResponsePayload.class).getId());
+    }
+
+    @Test
+    public void testFollowSessions() throws Exception {
+        int subscribers = sessionFeed.countSubscribers();
+
+        this.mockMvc.perform(get("/chargingSessions/feed").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andExpect(status().isOk());
+        assertEquals(subscribers + 1, sessionFeed.countSubscribers());
     }
 
     @Test
@@ -135,6 +395,108 @@ public class ChargingSessionControllerTest {
                 .andExpect(jsonPath("$.stoppedCount").value(responsePayload.getStoppedCount()));
     }
 
+    @Test
+    public void testFetchSessionSummaryNotModified() throws Exception {
+        when(chargingSessionService.fetchSessionsSummary()).thenReturn(new ChargingSessionSummaryPayload(2, 1, 1));
+
+        String etag = this.mockMvc.perform(get("/chargingSessions/summary"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        this.mockMvc.perform(get("/chargingSessions/summary").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        when(chargingSessionService.fetchSessionsSummary()).thenReturn(new ChargingSessionSummaryPayload(3, 2, 1));
+        this.mockMvc.perform(get("/chargingSessions/summary").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalCount").value(3));
+    }
+
+    @Test
+    public void testFetchSessionSummaryAsCbor() throws Exception {
+        when(chargingSessionService.fetchSessionsSummary()).thenReturn(new ChargingSessionSummaryPayload(2, 1, 1));
+
+        byte[] body = this.mockMvc.perform(get("/chargingSessions/summary").accept(APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertEquals(new ChargingSessionSummaryPayload(2, 1, 1),
+                cborMapper.readValue(body, ChargingSessionSummaryPayload.class));
+    }
+
+    @Test
+    public void testFetchSessionHistogram() throws Exception {
+        Date from = Date.from(ZonedDateTime.parse("2020-03-01T00:00:00Z").toInstant());
+        Date to = Date.from(ZonedDateTime.parse("2020-03-03T00:00:00Z").toInstant());
+        ChargingSessionHistogramPayload histogram = new ChargingSessionHistogramPayload(from, to, "DAY", List.of(
+                new ChargingSessionPeriodPayload(from, 5, 4),
+                new ChargingSessionPeriodPayload(Date.from(ZonedDateTime.parse("2020-03-02T00:00:00Z").toInstant()), 0, 1)));
+
+        when(chargingSessionService.fetchSessionsSummary(from, to, "day")).thenReturn(histogram);
+
+        this.mockMvc.perform(get("/chargingSessions/summary")
+                .param("from", "2020-03-01T00:00:00Z")
+                .param("to", "2020-03-03T00:00:00Z")
+                .param("granularity", "day"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.granularity").value("DAY"))
+                .andExpect(jsonPath("$.periods.length()").value(2))
+                .andExpect(jsonPath("$.periods[0].startedCount").value(5))
+                .andExpect(jsonPath("$.periods[1].stoppedCount").value(1));
+    }
+
+    @Test
+    public void testFetchSessionHistogramWithInvalidGranularity() throws Exception {
+        when(chargingSessionService.fetchSessionsSummary(any(), any(), eq("week"))).thenThrow(IllegalArgumentException.class);
+
+        this.mockMvc.perform(get("/chargingSessions/summary")
+                .param("from", "2020-03-01T00:00:00Z")
+                .param("to", "2020-03-03T00:00:00Z")
+                .param("granularity", "week"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testScrapeMetrics() throws Exception {
+        this.mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("ccs_sessions_live")))
+                .andExpect(content().string(containsString("ccs_sessions_memory_bytes")));
+    }
+
+    /**
+     * Perform a request handled asynchronously and dispatch its result
+     */
+    private ResultActions performAsync(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MvcResult result = this.mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return this.mockMvc.perform(asyncDispatch(result));
+    }
+
+    /**
+     * Make the service visit the sessions of the payloads
+     */
+    private void visitChargingSessions(ChargingSessionResponsePayload... payloads) {
+        // a new version, so that the list cached by another test is not served
+        when(chargingSessionService.fetchSessionsVersion()).thenReturn(nextVersion.incrementAndGet());
+        doAnswer(invocation -> {
+            SessionVisitor visitor = invocation.getArgument(0);
+            for (ChargingSessionResponsePayload payload : payloads) {
+                UUID id = UUID.fromString(payload.getId());
+                visitor.visit(id.getMostSignificantBits(), id.getLeastSignificantBits(), payload.getStationId(),
+                        payload.getStartedAt().getTime(),
+                        payload.getStoppedAt() == null ? 0 : payload.getStoppedAt().getTime());
+            }
+            return null;
+        }).when(chargingSessionService).visitChargingSessions(any());
+    }
+
+    private static UUID toUUID(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        assertEquals(16, bytes.length);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
     private ChargingSessionResponsePayload getNewChargingSessionPayload(String stationId) {
         ChargingSessionResponsePayload session = new ChargingSessionResponsePayload();
         session.setId(UUID.randomUUID().toString());
@@ -0,0 +1,95 @@
+package com.charging.sessions.ccs.controller;
+
+import com.charging.sessions.ccs.payload.ChargingSessionAnalyticsPayload;
+import com.charging.sessions.ccs.payload.ChargingSessionConcurrencyPayload;
+import com.charging.sessions.ccs.payload.ChargingSessionDurationsPayload;
+import com.charging.sessions.ccs.service.SessionAnalyticsService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.Date;
+import java.util.Map;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+public class SessionAnalyticsControllerTest {
+
+    @MockBean
+    private SessionAnalyticsService sessionAnalyticsService;
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    private MockMvc mockMvc;
+
+    private final ChargingSessionAnalyticsPayload analytics = new ChargingSessionAnalyticsPayload(3,
+            Map.of("stationA", 2L, "stationB", 1L),
+            new ChargingSessionDurationsPayload(2, 1500, 1000, 1000, 2000, 2000, 2000, 2000),
+            new ChargingSessionConcurrencyPayload(2, new Date(60_000), new Date(120_000)));
+
+    @Before
+    public void setUp() {
+        this.mockMvc = webAppContextSetup(webApplicationContext).build();
+        when(sessionAnalyticsService.fetchSessionsAnalytics()).thenReturn(completedFuture(analytics));
+    }
+
+    @Test
+    public void testFetchAnalytics() throws Exception {
+        performAsync(get("/chargingSessions/analytics"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalCount").value(3))
+                .andExpect(jsonPath("$.stations.stationA").value(2))
+                .andExpect(jsonPath("$.durations.averageMillis").value(1500.0))
+                .andExpect(jsonPath("$.concurrency.peakCount").value(2));
+    }
+
+    @Test
+    public void testFetchStationAnalytics() throws Exception {
+        performAsync(get("/chargingSessions/analytics/stations"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.stationA").value(2))
+                .andExpect(jsonPath("$.stationB").value(1));
+    }
+
+    @Test
+    public void testFetchDurationAnalytics() throws Exception {
+        performAsync(get("/chargingSessions/analytics/durations"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(2))
+                .andExpect(jsonPath("$.medianMillis").value(1000))
+                .andExpect(jsonPath("$.p99Millis").value(2000));
+    }
+
+    @Test
+    public void testFetchConcurrencyAnalytics() throws Exception {
+        performAsync(get("/chargingSessions/analytics/concurrency"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.peakCount").value(2))
+                .andExpect(jsonPath("$.peakFrom").exists())
+                .andExpect(jsonPath("$.peakTo").exists());
+    }
+
+    private ResultActions performAsync(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MvcResult result = this.mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return this.mockMvc.perform(asyncDispatch(result));
+    }
+}
@@ -0,0 +1,172 @@
+package com.charging.sessions.ccs.feed;
+
+import com.charging.sessions.ccs.payload.ChargingSessionSummaryPayload;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class SessionFeedTest {
+
+    private FeedProperties properties;
+
+    private SessionFeed sessionFeed;
+
+    @Before
+    public void setUp() {
+        properties = new FeedProperties();
+        properties.setBufferSize(2);
+        sessionFeed = new SessionFeed(properties, new ObjectMapper());
+    }
+
+    @After
+    public void tearDown() {
+        sessionFeed.close();
+    }
+
+    @Test
+    public void testPublishedEventsAreSentInOrder() throws InterruptedException {
+        RecordingEmitter emitter = new RecordingEmitter(new CountDownLatch(0));
+        sessionFeed.subscribe(emitter);
+
+        sessionFeed.publish(SessionFeed.SESSION_STARTED, new ChargingSessionSummaryPayload(1, 1, 0));
+        assertEquals("event:session.started\ndata:{\"totalCount\":1,\"startedCount\":1,\"stoppedCount\":0}",
+                emitter.next());
+
+        sessionFeed.publishSummary(() -> new ChargingSessionSummaryPayload(2, 1, 1));
+        sessionFeed.publishSummary(() -> new ChargingSessionSummaryPayload(2, 1, 1));
+        sessionFeed.publishSummary(() -> new ChargingSessionSummaryPayload(3, 2, 1));
+        assertTrue(emitter.next().startsWith("event:summary\ndata:{\"totalCount\":2"));
+        assertTrue(emitter.next().startsWith("event:summary\ndata:{\"totalCount\":3"));
+        assertNull(emitter.events.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testNewSubscriberAloneGetsTheLastSummary() throws InterruptedException {
+        RecordingEmitter emitter = new RecordingEmitter(new CountDownLatch(0));
+        sessionFeed.subscribe(emitter);
+        sessionFeed.publishSummary(() -> new ChargingSessionSummaryPayload(2, 1, 1));
+        assertTrue(emitter.next().startsWith("event:summary\ndata:{\"totalCount\":2"));
+
+        RecordingEmitter newEmitter = new RecordingEmitter(new CountDownLatch(0));
+        sessionFeed.subscribe(newEmitter);
+        assertTrue(newEmitter.next().startsWith("event:summary\ndata:{\"totalCount\":2"));
+
+        // the unchanged summary is not sent again to anyone
+        sessionFeed.publishSummary(() -> new ChargingSessionSummaryPayload(2, 1, 1));
+        assertNull(emitter.events.poll(100, TimeUnit.MILLISECONDS));
+        assertNull(newEmitter.events.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testSlowSubscriberDropsEvents() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        RecordingEmitter slowEmitter = new RecordingEmitter(blocked);
+        sessionFeed.subscribe(slowEmitter);
+
+        // the first event is being sent to the slow subscriber, the next two fill its buffer and the last two are dropped
+        sessionFeed.publish(SessionFeed.SESSION_STARTED, 1);
+        assertTrue(slowEmitter.sending.await(1, TimeUnit.SECONDS));
+        for (int i = 2; i <= 5; i++) {
+            sessionFeed.publish(SessionFeed.SESSION_STARTED, i);
+        }
+        blocked.countDown();
+        assertEquals("event:session.started\ndata:1", slowEmitter.next());
+        assertEquals("event:session.started\ndata:2", slowEmitter.next());
+        assertEquals("event:session.started\ndata:3", slowEmitter.next());
+        assertEquals("event:overflow\ndata:2", slowEmitter.next());
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        sessionFeed.bindTo(registry);
+        assertEquals(2, registry.get("ccs.feed.events.dropped").functionCounter().count(), 0);
+        assertEquals(1, registry.get("ccs.feed.subscribers").gauge().value(), 0);
+    }
+
+    @Test
+    public void testStalledSubscriberIsClosed() throws InterruptedException {
+        // a single dispatch thread, held by the stalled subscriber until it is closed
+        sessionFeed.close();
+        properties.setDispatchThreads(1);
+        properties.setSendTimeout(Duration.ofMillis(200));
+        sessionFeed = new SessionFeed(properties, new ObjectMapper());
+        RecordingEmitter stalledEmitter = new RecordingEmitter(new CountDownLatch(1));
+        RecordingEmitter emitter = new RecordingEmitter(new CountDownLatch(0));
+        sessionFeed.subscribe(stalledEmitter);
+        sessionFeed.subscribe(emitter);
+
+        sessionFeed.publish(SessionFeed.SESSION_STARTED, 1);
+        assertTrue(stalledEmitter.sending.await(1, TimeUnit.SECONDS));
+        sessionFeed.closeStalledSubscribers();
+        assertEquals(2, sessionFeed.countSubscribers());
+
+        Thread.sleep(300);
+        sessionFeed.closeStalledSubscribers();
+        assertTrue(stalledEmitter.failure instanceof TimeoutException);
+        assertEquals(1, sessionFeed.countSubscribers());
+        assertEquals("event:session.started\ndata:1", emitter.next());
+        assertNull(stalledEmitter.events.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Records the events sent, without the ids, after waiting for a latch. Completing it with an error fails the sends,
+     * like a closed connection
+     */
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+        private final CountDownLatch sending = new CountDownLatch(1);
+
+        private final CountDownLatch blocked;
+
+        private volatile Throwable failure;
+
+        private RecordingEmitter(CountDownLatch blocked) {
+            this.blocked = blocked;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (failure != null) {
+                throw new IOException("Connection closed", failure);
+            }
+
+            String event = builder.build().stream()
+                    .map(data -> data.getData().toString())
+                    .collect(Collectors.joining())
+                    .replaceFirst("^id:\\d+\n", "")
+                    .trim();
+            events.add(event);
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            failure = ex;
+            blocked.countDown();
+            super.completeWithError(ex);
+        }
+
+        private String next() throws InterruptedException {
+            return events.poll(1, TimeUnit.SECONDS);
+        }
+    }
+}
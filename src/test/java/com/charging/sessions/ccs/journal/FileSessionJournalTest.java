@@ -0,0 +1,501 @@
+package com.charging.sessions.ccs.journal;
+
+import com.charging.sessions.ccs.model.ChargingSession;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.charging.sessions.ccs.model.SessionStatus.IN_PROGRESS;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FileSessionJournalTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private JournalProperties properties;
+
+    @Before
+    public void setUp() {
+        properties = new JournalProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(temporaryFolder.getRoot().toPath());
+    }
+
+    @Test
+    public void testReplayAppendedRecords() throws IOException {
+        ChargingSession sessionA = new ChargingSession(UUID.randomUUID(), "stationA", new Date(1000), null, IN_PROGRESS);
+        ChargingSession sessionB = new ChargingSession(UUID.randomUUID(), "stationÜ", new Date(2000), null, IN_PROGRESS);
+
+        try (FileSessionJournal journal = new FileSessionJournal(properties)) {
+            journal.replay(new RecordingHandler());
+            journal.appendStart(sessionA);
+            journal.appendStart(sessionB);
+            journal.appendStop(sessionA.stop(new Date(3000)));
+        }
+
+        RecordingHandler handler = new RecordingHandler();
+        try (FileSessionJournal journal = new FileSessionJournal(properties)) {
+            journal.replay(handler);
+        }
+
+        assertEquals(List.of(
+                "started " + sessionA.getId() + " stationA 1000",
+                "started " + sessionB.getId() + " stationÜ 2000",
+                "stopped " + sessionA.getId() + " 3000"), handler.records);
+    }
+
+    @Test
+    public void testReplayStationCodesRedefinedAfterRestart() throws IOException {
+        ChargingSession sessionA = new ChargingSession(UUID.randomUUID(), "stationA", new Date(1000), null, IN_PROGRESS);
+        ChargingSession sessionB = new ChargingSession(UUID.randomUUID(), "stationB", new Date(2000), null, IN_PROGRESS);
+        ChargingSession sessionC = new ChargingSession(UUID.randomUUID(), "stationA", new Date(3000), null, IN_PROGRESS);
+
+        try (FileSessionJournal journal = new FileSessionJournal(properties)) {
+            journal.appendStart(sessionA);
+        }
+        // the reopened journal gives the first code to another station in the same segment
+        try (FileSessionJournal journal = new FileSessionJournal(properties)) {
+            journal.replay(new RecordingHandler());
+            journal.appendStart(sessionB);
+            journal.appendStart(sessionC);
+        }
+
+        RecordingHandler handler = new RecordingHandler();
+        try (FileSessionJournal journal = new FileSessionJournal(properties)) {
+            journal.replay(handler);
+        }
+
+        assertEquals(List.of(
+                "started " + sessionA.getId() + " stationA 1000",
+                "started " + sessionB.getId() + " stationB 2000",
+                "started " + sessionC.getId() + " stationA 3000"), handler.records);
+    }
+
+    @Test
+    public void testReplayRecordsAppendedInBatch() throws IOException {
+        ChargingSession sessionA = new ChargingSession(UUID.randomUUID(), "stationA", new Date(1000), null, IN_PROGRESS);
+        ChargingSession sessionB = new ChargingSession(UUID.randomUUID(), "stationB", new Date(2000), null, IN_PROGRESS);
+
+        try (FileSessionJournal journal = new FileSessionJournal(properties)) {
+            journal.appendStarts(List.of(sessionA, sessionB));
+            journal.appendStops(List.of(sessionB.stop(new Date(3000)), sessionA.stop(new Date(4000))));
+        }
+
+        RecordingHandler handler = new RecordingHandler();
+        try (FileSessionJournal journal = new FileSessionJournal(properties)) {
+            journal.replay(handler);
+        }
+
+        assertEquals(List.of(
+                "started " + sessionA.getId() + " stationA 1000",
+                "started " + sessionB.getId() + " stationB 2000",
+                "stopped " + sessionB.getId() + " 3000",
+                "stopped " + sessionA.getId() + " 4000"), handler.records);
+    }
+
+    @Test
+    public void testReplayRecordsAppendedAsynchronously() throws IOException {
+        ChargingSession sessionA = new ChargingSession(UUID.randomUUID(), "stationA", new Date(1000), null, IN_PROGRESS);
+        ChargingSession sessionB = new ChargingSession(UUID.randomUUID(), "stationB", new Date(2000), null, IN_PROGRESS);
+
+        try (FileSessionJournal journal = new FileSessionJournal(properties)) {
+            CompletableFuture<Void> starts = journal.appendStartsAsync(List.of(sessionA, sessionB));
+            CompletableFuture<Void> stops = journal.appendStopsAsync(List.of(sessionA.stop(new Date(3000))));
+            CompletableFuture.allOf(starts, stops).join();
+        }
+
+        RecordingHandler handler = new RecordingHandler();
+        try (FileSessionJournal journal = new FileSessionJournal(properties)) {
+            journal.replay(handler);
+        }
+
+        assertEquals(List.of(
+                "started " + sessionA.getId() + " stationA 1000",
+                "started " + sessionB.getId() + " stationB 2000",
+                "stopped " + sessionA.getId() + " 3000"), handler.records);
+    }
+
+    @Test
+    public void testReplayWithIntervalFsyncPolicy() throws IOException {
+        properties.setFsyncPolicy(FsyncPolicy.INTERVAL);
+        ChargingSession session = new ChargingSession(UUID.randomUUID(), "stationA", new Date(1000), null, IN_PROGRESS);
+
+        try (FileSessionJournal journal = new FileSessionJournal(properties)) {
+            journal.appendStart(session);
+        }
+
+        RecordingHandler handler = new RecordingHandler();
+        try (FileSessionJournal journal = new FileSessionJournal(properties)) {
+            journal.replay(handler);
+        }
+
+        assertEquals(List.of("started " + session.getId() + " stationA 1000"), handler.records);
+    }
+
+    @Test
+    public void testTornTailIsTruncated() throws IOException {
+        ChargingSession sessionA = new ChargingSession(UUID.randomUUID(), "stationA", new Date(1000), null, IN_PROGRESS);
+        ChargingSession sessionB = new ChargingSession(UUID.randomUUID(), "stationB", new Date(2000), null, IN_PROGRESS);
+        Path logFile = temporaryFolder.getRoot().toPath().resolve("sessions-0000000000000000000.log");
+
+        try (FileSessionJournal journal = new FileSessionJournal(properties)) {
+            journal.appendStart(sessionA);
+            journal.appendStart(sessionB);
+        }
+        try (FileChannel channel = FileChannel.open(logFile, WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        RecordingHandler handler = new RecordingHandler();
+        try (FileSessionJournal journal = new FileSessionJournal(properties)) {
+            journal.replay(handler);
+            journal.appendStop(sessionA.stop(new Date(3000)));
+        }
+        assertEquals(List.of("started " + sessionA.getId() + " stationA 1000"), handler.records);
+
+        handler = new RecordingHandler();
+        try (FileSessionJournal journal = new FileSessionJournal(properties)) {
+            journal.replay(handler);
+        }
+        assertEquals(List.of(
+                "started " + sessionA.getId() + " stationA 1000",
+                "stopped " + sessionA.getId() + " 3000"), handler.records);
+    }
+
+    @Test
+    public void testReplayFromSnapshot() throws IOException {
+        ChargingSession sessionA = new ChargingSession(UUID.randomUUID(), "stationA", new Date(1000), null, IN_PROGRESS);
+        ChargingSession sessionB = new ChargingSession(UUID.randomUUID(), "stationB", new Date(2000), null, IN_PROGRESS);
+        ChargingSession stoppedSessionA = sessionA.stop(new Date(3000));
+
+        try (FileSessionJournal journal = new FileSessionJournal(properties)) {
+            journal.appendStart(sessionA);
+            journal.appendStart(sessionB);
+            journal.appendStop(stoppedSessionA);
+            journal.snapshot(() -> List.of(stoppedSessionA, sessionB));
+            journal.appendStop(sessionB.stop(new Date(4000)));
+        }
+
+        assertEquals(List.of("sessions-0000000000000000001.log", "snapshot-0000000000000000001.snap"),
+                listFileNames());
+
+        RecordingHandler handler = new RecordingHandler();
+        try (FileSessionJournal journal = new FileSessionJournal(properties)) {
+            journal.replay(handler);
+        }
+
+        assertEquals(List.of(
+                "started " + sessionA.getId() + " stationA 1000",
+                "stopped " + sessionA.getId() + " 3000",
+                "started " + sessionB.getId() + " stationB 2000",
+                "stopped " + sessionB.getId() + " 4000"), handler.records);
+    }
+
+    @Test
+    public void testSnapshotReplacesPreviousSnapshot() throws IOException {
+        ChargingSession session = new ChargingSession(UUID.randomUUID(), "stationA", new Date(1000), null, IN_PROGRESS);
+
+        try (FileSessionJournal journal = new FileSessionJournal(properties)) {
+            journal.appendStart(session);
+            journal.snapshot(() -> List.of(session));
+            journal.snapshot(() -> List.of(session));
+        }
+
+        assertEquals(List.of("sessions-0000000000000000002.log", "snapshot-0000000000000000002.snap"),
+                listFileNames());
+
+        RecordingHandler handler = new RecordingHandler();
+        try (FileSessionJournal journal = new FileSessionJournal(properties)) {
+            journal.replay(handler);
+        }
+
+        assertEquals(List.of("started " + session.getId() + " stationA 1000"), handler.records);
+    }
+
+    @Test
+    public void testFailedWriteIsCutFromTheSegment() throws IOException {
+        ChargingSession sessionA = new ChargingSession(UUID.randomUUID(), "stationA", new Date(1000), null, IN_PROGRESS);
+        ChargingSession sessionB = new ChargingSession(UUID.randomUUID(), "stationB", new Date(2000), null, IN_PROGRESS);
+        ChargingSession sessionC = new ChargingSession(UUID.randomUUID(), "stationB", new Date(3000), null, IN_PROGRESS);
+        Failures failures = new Failures();
+
+        try (FileSessionJournal journal = new FailingFileSessionJournal(properties, failures)) {
+            journal.replay(new RecordingHandler());
+            journal.appendStart(sessionA);
+            failures.writes = true;
+            try {
+                journal.appendStarts(List.of(sessionB, sessionA.stop(new Date(1500))));
+                fail("The write failure should be thrown");
+            } catch (UncheckedIOException e) {
+                assertEquals("disk full", e.getCause().getMessage());
+            }
+            failures.writes = false;
+            // the definition of the station was cut with the failed records
+            journal.appendStart(sessionC);
+        }
+
+        assertEquals(List.of("sessions-0000000000000000000.log"), listFileNames());
+        RecordingHandler handler = new RecordingHandler();
+        try (FileSessionJournal journal = new FileSessionJournal(properties)) {
+            journal.replay(handler);
+        }
+
+        assertEquals(List.of(
+                "started " + sessionA.getId() + " stationA 1000",
+                "started " + sessionC.getId() + " stationB 3000"), handler.records);
+    }
+
+    @Test
+    public void testFailedWriteContinuesInANewSegmentWhenNotCut() throws IOException {
+        ChargingSession sessionA = new ChargingSession(UUID.randomUUID(), "stationA", new Date(1000), null, IN_PROGRESS);
+        ChargingSession sessionB = new ChargingSession(UUID.randomUUID(), "stationB", new Date(2000), null, IN_PROGRESS);
+        ChargingSession sessionC = new ChargingSession(UUID.randomUUID(), "stationA", new Date(3000), null, IN_PROGRESS);
+        Failures failures = new Failures();
+
+        try (FileSessionJournal journal = new FailingFileSessionJournal(properties, failures)) {
+            journal.replay(new RecordingHandler());
+            journal.appendStart(sessionA);
+            failures.writes = true;
+            failures.truncates = true;
+            try {
+                journal.appendStart(sessionB);
+                fail("The write failure should be thrown");
+            } catch (UncheckedIOException e) {
+                assertEquals("disk full", e.getCause().getMessage());
+            }
+            failures.writes = false;
+            journal.appendStart(sessionC);
+        }
+
+        // the partial record stays at the end of the first segment, the replay skips it and reads the next one
+        assertEquals(List.of("sessions-0000000000000000000.log", "sessions-0000000000000000001.log"), listFileNames());
+        RecordingHandler handler = new RecordingHandler();
+        try (FileSessionJournal journal = new FileSessionJournal(properties)) {
+            journal.replay(handler);
+        }
+
+        assertEquals(List.of(
+                "started " + sessionA.getId() + " stationA 1000",
+                "started " + sessionC.getId() + " stationA 3000"), handler.records);
+    }
+
+    @Test
+    public void testOnlyTheSuccessfulRecordsAreReplayedAfterAFailedBatch() throws IOException {
+        // large batches, flushed several times before they are completed
+        properties.setMaxBatchSize(10_000);
+        Failures failures = new Failures();
+        failures.writesBeforeFailure = 1;
+        List<ChargingSession> sessions = new ArrayList<>();
+        List<CompletableFuture<Void>> written = new ArrayList<>();
+
+        try (FileSessionJournal journal = new FailingFileSessionJournal(properties, failures)) {
+            journal.replay(new RecordingHandler());
+            for (int i = 0; i < 5000; i++) {
+                ChargingSession session = new ChargingSession(UUID.randomUUID(), "station" + i % 10, new Date(i), null,
+                        IN_PROGRESS);
+                sessions.add(session);
+                written.add(journal.appendStartsAsync(List.of(session)));
+            }
+            CompletableFuture.allOf(written.toArray(CompletableFuture[]::new)).exceptionally(failure -> null).join();
+            failures.writesBeforeFailure = Integer.MAX_VALUE;
+            journal.appendStart(new ChargingSession(UUID.randomUUID(), "station0", new Date(5000), null, IN_PROGRESS));
+        }
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < sessions.size(); i++) {
+            if (!written.get(i).isCompletedExceptionally()) {
+                ChargingSession session = sessions.get(i);
+                expected.add("started " + session.getId() + " " + session.getStationId() + " " + i);
+            }
+        }
+        assertTrue(written.stream().anyMatch(CompletableFuture::isCompletedExceptionally));
+
+        RecordingHandler handler = new RecordingHandler();
+        try (FileSessionJournal journal = new FileSessionJournal(properties)) {
+            journal.replay(handler);
+        }
+        assertEquals(expected, handler.records.subList(0, handler.records.size() - 1));
+    }
+
+    private List<String> listFileNames() throws IOException {
+        try (Stream<Path> files = Files.list(temporaryFolder.getRoot().toPath())) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static class Failures {
+
+        private volatile boolean writes;
+
+        private volatile boolean truncates;
+
+        /**
+         * The number of writes before the next ones fail, written by the writer thread
+         */
+        private volatile int writesBeforeFailure = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Journal whose segments fail to be written or truncated on demand
+     */
+    private static class FailingFileSessionJournal extends FileSessionJournal {
+
+        private final Failures failures;
+
+        private FailingFileSessionJournal(JournalProperties properties, Failures failures) {
+            super(properties);
+            this.failures = failures;
+        }
+
+        @Override
+        FileChannel openSegment(Path file, OpenOption... options) throws IOException {
+            return new FailingFileChannel(super.openSegment(file, options), failures);
+        }
+    }
+
+    /**
+     * Delegates to a file channel, a failing write writes half of its bytes before failing
+     */
+    private static class FailingFileChannel extends FileChannel {
+
+        private final FileChannel delegate;
+
+        private final Failures failures;
+
+        private FailingFileChannel(FileChannel delegate, Failures failures) {
+            this.delegate = delegate;
+            this.failures = failures;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (failures.writes || failures.writesBeforeFailure-- <= 0) {
+                src.limit(src.position() + src.remaining() / 2);
+                delegate.write(src);
+                throw new IOException("disk full");
+            }
+            return delegate.write(src);
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            if (failures.truncates) {
+                throw new IOException("device error");
+            }
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            delegate.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+
+    private static class RecordingHandler implements SessionJournal.ReplayHandler {
+
+        private final List<String> records = new ArrayList<>();
+
+        @Override
+        public void started(UUID sessionId, String stationId, Date startedAt) {
+            records.add("started " + sessionId + " " + stationId + " " + startedAt.getTime());
+        }
+
+        @Override
+        public void stopped(UUID sessionId, Date stoppedAt) {
+            records.add("stopped " + sessionId + " " + stoppedAt.getTime());
+        }
+    }
+}
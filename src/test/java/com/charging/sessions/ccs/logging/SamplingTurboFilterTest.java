@@ -0,0 +1,50 @@
+package com.charging.sessions.ccs.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SamplingTurboFilterTest {
+
+    private final LoggerContext loggerContext = new LoggerContext();
+
+    private final SamplingTurboFilter filter = new SamplingTurboFilter();
+
+    @Before
+    public void setUp() {
+        filter.setLoggerPrefix("com.charging.sessions.ccs");
+        filter.setSampleEvery(10);
+    }
+
+    @Test
+    public void testSampleInfoEvents() {
+        Logger logger = loggerContext.getLogger("com.charging.sessions.ccs.service.ChargingSessionServiceImpl");
+
+        int kept = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.decide(null, logger, Level.INFO, "event=session.started id={}", null, null) == FilterReply.NEUTRAL) {
+                kept++;
+            }
+        }
+
+        assertTrue("kept " + kept, kept > 8_000 && kept < 12_000);
+    }
+
+    @Test
+    public void testKeepWarningsAndOtherLoggers() {
+        Logger logger = loggerContext.getLogger("com.charging.sessions.ccs.service.ChargingSessionServiceImpl");
+        Logger otherLogger = loggerContext.getLogger("org.springframework.web");
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(FilterReply.NEUTRAL, filter.decide(null, logger, Level.ERROR, "not found", null, null));
+            assertEquals(FilterReply.NEUTRAL, filter.decide(null, logger, Level.INFO, null, null, null));
+            assertEquals(FilterReply.NEUTRAL, filter.decide(null, otherLogger, Level.INFO, "started", null, null));
+        }
+    }
+}
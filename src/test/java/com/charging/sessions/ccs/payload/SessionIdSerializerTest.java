@@ -0,0 +1,48 @@
+package com.charging.sessions.ccs.payload;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SessionIdSerializerTest {
+
+    private final ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.cbor().build();
+
+    @Test
+    public void testWritesCanonicalIdsAsBytes() throws IOException {
+        UUID sessionId = UUID.randomUUID();
+
+        JsonNode id = writeId(sessionId.toString());
+
+        assertTrue(id.isBinary());
+        ByteBuffer bytes = ByteBuffer.wrap(id.binaryValue());
+        assertEquals(sessionId, new UUID(bytes.getLong(), bytes.getLong()));
+    }
+
+    @Test
+    public void testWritesOtherIdsAsStrings() throws IOException {
+        String upperCase = UUID.randomUUID().toString().toUpperCase();
+        for (String id : new String[]{"1-1-1-1-1", upperCase, "not a session id", "0000000000000000000000000000000000-0"}) {
+            JsonNode written = writeId(id);
+
+            assertTrue(written.isTextual());
+            assertEquals(id, written.textValue());
+        }
+        assertFalse(SessionIdSerializer.isCanonical("00000000-0000-0000-0000-00000000000g"));
+        assertTrue(SessionIdSerializer.isCanonical("00000000-0000-0000-0000-00000000000f"));
+    }
+
+    private JsonNode writeId(String id) throws IOException {
+        byte[] cbor = cborMapper.writeValueAsBytes(new ChargingSessionBatchResultPayload(404, id, null));
+        return cborMapper.readTree(cbor).get("id");
+    }
+}
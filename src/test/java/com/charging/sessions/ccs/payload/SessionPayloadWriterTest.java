@@ -0,0 +1,100 @@
+package com.charging.sessions.ccs.payload;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.util.StdDateFormat;
+import org.junit.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Random;
+import java.util.UUID;
+
+import static com.charging.sessions.ccs.model.SessionStatus.FINISHED;
+import static com.charging.sessions.ccs.model.SessionStatus.IN_PROGRESS;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SessionPayloadWriterTest {
+
+    /**
+     * Configured like the object mapper of the application
+     */
+    private final ObjectMapper jsonMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private final ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.cbor()
+            .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    @Test
+    public void testWritesLikeThePayloadSerializer() throws IOException {
+        UUID id = UUID.randomUUID();
+        assertWritesLikePayload(jsonMapper, id, "stationA", 1583020800123L, 0);
+        assertWritesLikePayload(jsonMapper, id, "station \"Ü\"", 1583020800123L, 1583024400456L);
+        assertWritesLikePayload(cborMapper, id, "stationA", 1583020800123L, 0);
+        assertWritesLikePayload(cborMapper, id, "stationA", 1583020800123L, 1583024400456L);
+
+        ObjectMapper timestampMapper = Jackson2ObjectMapperBuilder.json().build();
+        assertWritesLikePayload(timestampMapper, id, "stationA", 1583020800123L, 1583024400456L);
+    }
+
+    @Test
+    public void testFormatsDatesLikeJackson() throws IOException {
+        Random random = new Random(42);
+        long[] timestamps = {0, 1, 951782400000L, 4107542400000L, 253402300799999L, 253402300800000L, -1};
+        for (long timestamp : timestamps) {
+            assertWritesLikePayload(jsonMapper, UUID.randomUUID(), "stationA", timestamp, 0);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            long timestamp = Math.floorMod(random.nextLong(), 253402300800000L);
+            assertWritesLikePayload(jsonMapper, new UUID(random.nextLong(), random.nextLong()), "stationA",
+                    timestamp, 0);
+        }
+    }
+
+    @Test
+    public void testFormatsDatesWithTheConfiguredFormat() throws IOException {
+        UUID id = UUID.randomUUID();
+        ObjectMapper dateFormatMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .dateFormat(new SimpleDateFormat("yyyy-MM-dd HH:mm"))
+                .build();
+        assertWritesLikePayload(dateFormatMapper, id, "stationA", 1583020800123L, 1583024400456L);
+
+        ObjectMapper timeZoneMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .timeZone("Europe/Berlin")
+                .build();
+        assertWritesLikePayload(timeZoneMapper, id, "stationA", 1583020800123L, 1593024400456L);
+
+        ObjectMapper colonMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .dateFormat(new StdDateFormat().withColonInTimeZone(true))
+                .build();
+        assertWritesLikePayload(colonMapper, id, "stationA", 1583020800123L, 0);
+    }
+
+    private void assertWritesLikePayload(ObjectMapper mapper, UUID id, String stationId, long startedAt,
+                                         long stoppedAt) throws IOException {
+        ChargingSessionResponsePayload payload = new ChargingSessionResponsePayload(id.toString(), stationId,
+                new Date(startedAt), stoppedAt == 0 ? null : new Date(stoppedAt),
+                stoppedAt == 0 ? IN_PROGRESS.name() : FINISHED.name());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(output)) {
+            new SessionPayloadWriter(generator, mapper.getSerializationConfig())
+                    .write(id.getMostSignificantBits(), id.getLeastSignificantBits(), stationId, startedAt, stoppedAt);
+        }
+
+        byte[] expected = mapper.writeValueAsBytes(payload);
+        assertArrayEquals(new String(expected) + " != " + Arrays.toString(output.toByteArray()),
+                expected, output.toByteArray());
+    }
+}
@@ -1,23 +1,46 @@
 package com.charging.sessions.ccs.repository;
 
+import com.charging.sessions.ccs.journal.SessionJournal;
 import com.charging.sessions.ccs.model.ChargingSession;
+import com.charging.sessions.ccs.model.SessionActivity;
+import com.charging.sessions.ccs.model.SessionPage;
+import com.charging.sessions.ccs.model.StopResult;
 import org.junit.After;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
 import org.springframework.test.context.junit4.SpringRunner;
 
-import java.util.Optional;
-import java.util.Set;
-import java.util.UUID;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import static com.charging.sessions.ccs.model.SessionStatus.FINISHED;
 import static com.charging.sessions.ccs.model.SessionStatus.IN_PROGRESS;
+import static com.charging.sessions.ccs.model.TimeGranularity.DAY;
+import static com.charging.sessions.ccs.model.TimeGranularity.MINUTE;
+import static com.charging.sessions.ccs.model.StopResult.Outcome.*;
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
 
 @RunWith(SpringRunner.class)
 public class ChargingSessionRepositoryImplTest {
 
+    @Mock
+    private SessionJournal sessionJournal;
+
+    @Spy
+    private SessionIdGenerator sessionIdGenerator = new TimeOrderedSessionIdGenerator();
+
     @InjectMocks
     private ChargingSessionRepositoryImpl chargingSessionRepository;
 
@@ -39,11 +62,104 @@ public class ChargingSessionRepositoryImplTest {
     @Test
     public void testStopSession() {
         ChargingSession newSession = chargingSessionRepository.addNewSession("stationA");
-        ChargingSession stoppedSession = chargingSessionRepository.stopSession(newSession);
+        StopResult result = chargingSessionRepository.stopSession(newSession.getId());
+        ChargingSession stoppedSession = result.getSession();
 
+        assertEquals(STOPPED, result.getOutcome());
         assertEquals(newSession.getId(), stoppedSession.getId());
         assertEquals(stoppedSession.getStatus(), FINISHED);
         assertNotNull(stoppedSession.getStoppedAt());
+        assertEquals(IN_PROGRESS, newSession.getStatus());
+        assertEquals(stoppedSession, chargingSessionRepository.findById(newSession.getId()).get());
+        assertEquals(FINISHED, chargingSessionRepository.findById(newSession.getId()).get().getStatus());
+    }
+
+    @Test
+    public void testSessionsAreJournaled() {
+        ChargingSession newSession = chargingSessionRepository.addNewSession("stationA");
+        ChargingSession stoppedSession = chargingSessionRepository.stopSession(newSession.getId()).getSession();
+        chargingSessionRepository.stopSession(newSession.getId());
+
+        verify(sessionJournal).appendStart(newSession);
+        verify(sessionJournal, times(1)).appendStop(stoppedSession);
+    }
+
+    @Test
+    public void testRecover() {
+        UUID startedId = UUID.randomUUID();
+        UUID stoppedId = UUID.randomUUID();
+        doAnswer(invocation -> {
+            SessionJournal.ReplayHandler handler = invocation.getArgument(0);
+            handler.started(startedId, "stationA", new Date());
+            handler.started(stoppedId, "stationB", new Date());
+            handler.stopped(stoppedId, new Date());
+            handler.started(startedId, "stationA", new Date());
+            return null;
+        }).when(sessionJournal).replay(any());
+
+        chargingSessionRepository.recover();
+
+        assertEquals(IN_PROGRESS, chargingSessionRepository.findById(startedId).get().getStatus());
+        assertEquals(FINISHED, chargingSessionRepository.findById(stoppedId).get().getStatus());
+        assertEquals(1, chargingSessionRepository.findActiveSessions().size());
+        assertEquals(1, chargingSessionRepository.findByStationId("stationB").size());
+        verify(sessionJournal, never()).appendStart(any());
+    }
+
+    @Test
+    public void testRecoverStopBeforeStart() {
+        UUID sessionId = UUID.randomUUID();
+        Date stoppedAt = new Date();
+        doAnswer(invocation -> {
+            SessionJournal.ReplayHandler handler = invocation.getArgument(0);
+            handler.stopped(sessionId, stoppedAt);
+            handler.started(sessionId, "stationA", new Date(stoppedAt.getTime() - 1000));
+            return null;
+        }).when(sessionJournal).replay(any());
+
+        chargingSessionRepository.recover();
+
+        ChargingSession session = chargingSessionRepository.findById(sessionId).get();
+        assertEquals(FINISHED, session.getStatus());
+        assertEquals(stoppedAt, session.getStoppedAt());
+        assertTrue(chargingSessionRepository.findActiveSessions().isEmpty());
+    }
+
+    @Test
+    public void testStopSessionAlreadyStopped() {
+        ChargingSession newSession = chargingSessionRepository.addNewSession("stationA");
+        ChargingSession stoppedSession = chargingSessionRepository.stopSession(newSession.getId()).getSession();
+        StopResult result = chargingSessionRepository.stopSession(newSession.getId());
+
+        assertEquals(ALREADY_STOPPED, result.getOutcome());
+        assertEquals(stoppedSession.getStoppedAt(), result.getSession().getStoppedAt());
+    }
+
+    @Test
+    public void testStopSessionWithRandomId() {
+        StopResult result = chargingSessionRepository.stopSession(UUID.randomUUID());
+
+        assertEquals(NOT_FOUND, result.getOutcome());
+        assertNull(result.getSession());
+    }
+
+    @Test
+    public void testStopSessionConcurrently() throws Exception {
+        ChargingSession newSession = chargingSessionRepository.addNewSession("stationA");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<StopResult>> stops = Collections.nCopies(64, () -> chargingSessionRepository.stopSession(newSession.getId()));
+
+        try {
+            long stoppedCount = 0;
+            for (Future<StopResult> result : executor.invokeAll(stops)) {
+                if (result.get().getOutcome() == STOPPED) {
+                    stoppedCount++;
+                }
+            }
+            assertEquals(1, stoppedCount);
+        } finally {
+            executor.shutdown();
+        }
     }
 
     @Test
@@ -63,6 +179,258 @@ public class ChargingSessionRepositoryImplTest {
         assertTrue(allSessions.isEmpty());
     }
 
+    @Test
+    public void testForEachSession() {
+        ChargingSession sessionA = chargingSessionRepository.addNewSession("stationA");
+        ChargingSession sessionB = chargingSessionRepository.addNewSession("stationB");
+        ChargingSession stoppedSessionA = chargingSessionRepository.stopSession(sessionA.getId()).getSession();
+
+        List<ChargingSession> visited = new ArrayList<>();
+        chargingSessionRepository.forEachSession((idHi, idLo, stationId, startedAt, stoppedAt) ->
+                visited.add(new ChargingSession(new UUID(idHi, idLo), stationId, new Date(startedAt),
+                        stoppedAt == 0 ? null : new Date(stoppedAt), stoppedAt == 0 ? IN_PROGRESS : FINISHED)));
+
+        assertEquals(List.of(stoppedSessionA, sessionB), visited);
+        assertEquals(stoppedSessionA.getStoppedAt(), visited.get(0).getStoppedAt());
+        assertNull(visited.get(1).getStoppedAt());
+    }
+
+    @Test
+    public void testForEachSessionInRange() {
+        int firstPosition = chargingSessionRepository.sessionPositionLimit();
+        List<ChargingSession> sessions = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            sessions.add(chargingSessionRepository.addNewSession("station" + i));
+        }
+        assertEquals(firstPosition + 5, chargingSessionRepository.sessionPositionLimit());
+
+        List<UUID> visited = new ArrayList<>();
+        chargingSessionRepository.forEachSession(firstPosition + 1, firstPosition + 3,
+                (idHi, idLo, stationId, startedAt, stoppedAt) -> visited.add(new UUID(idHi, idLo)));
+        assertEquals(List.of(sessions.get(1).getId(), sessions.get(2).getId()), visited);
+
+        // the positions past the limit are not stored
+        visited.clear();
+        chargingSessionRepository.forEachSession(firstPosition + 4, Integer.MAX_VALUE,
+                (idHi, idLo, stationId, startedAt, stoppedAt) -> visited.add(new UUID(idHi, idLo)));
+        assertEquals(List.of(sessions.get(4).getId()), visited);
+    }
+
+    @Test
+    public void testModificationVersion() {
+        long version = chargingSessionRepository.modificationVersion();
+
+        ChargingSession session = chargingSessionRepository.addNewSession("stationA");
+        long addedVersion = chargingSessionRepository.modificationVersion();
+        chargingSessionRepository.findAllSessions().size();
+        chargingSessionRepository.findById(session.getId());
+        assertEquals(addedVersion, chargingSessionRepository.modificationVersion());
+
+        chargingSessionRepository.stopSession(session.getId());
+        long stoppedVersion = chargingSessionRepository.modificationVersion();
+        chargingSessionRepository.stopSession(session.getId());
+        assertEquals(stoppedVersion, chargingSessionRepository.modificationVersion());
+
+        chargingSessionRepository.deleteAllSessions();
+        assertTrue(version < addedVersion);
+        assertTrue(addedVersion < stoppedVersion);
+        assertTrue(stoppedVersion < chargingSessionRepository.modificationVersion());
+    }
+
+    @Test
+    public void testFindActiveSessions() {
+        ChargingSession newSessionA = chargingSessionRepository.addNewSession("stationA");
+        ChargingSession newSessionB = chargingSessionRepository.addNewSession("stationB");
+        chargingSessionRepository.stopSession(newSessionA.getId());
+
+        List<ChargingSession> activeSessions = chargingSessionRepository.findActiveSessions();
+
+        assertEquals(List.of(newSessionB), activeSessions);
+        assertEquals(2, chargingSessionRepository.findAllSessions().size());
+        assertTrue(chargingSessionRepository.findAllSessions().contains(newSessionA));
+        assertEquals(FINISHED, chargingSessionRepository.findById(newSessionA.getId()).get().getStatus());
+    }
+
+    @Test
+    public void testFindByStationId() {
+        ChargingSession newSessionA = chargingSessionRepository.addNewSession("stationA");
+        ChargingSession newSessionB = chargingSessionRepository.addNewSession("stationA");
+        chargingSessionRepository.addNewSession("stationB");
+        chargingSessionRepository.stopSession(newSessionA.getId());
+
+        List<ChargingSession> stationSessions = chargingSessionRepository.findByStationId("stationA");
+
+        assertEquals(2, stationSessions.size());
+        assertTrue(stationSessions.contains(newSessionB));
+        assertTrue(stationSessions.stream().anyMatch(s -> s.getId().equals(newSessionA.getId()) && s.getStatus() == FINISHED));
+        assertTrue(chargingSessionRepository.findByStationId("stationC").isEmpty());
+    }
+
+    @Test
+    public void testAddAndStopSessionsInBatch() {
+        List<ChargingSession> newSessions = chargingSessionRepository.addNewSessions(List.of("stationA", "stationB", "stationA"));
+        assertEquals(3, newSessions.size());
+        assertEquals("stationB", newSessions.get(1).getStationId());
+        assertEquals(2, chargingSessionRepository.findByStationId("stationA").size());
+        verify(sessionJournal, times(1)).appendStarts(newSessions);
+
+        chargingSessionRepository.stopSession(newSessions.get(2).getId());
+        List<StopResult> results = chargingSessionRepository.stopSessions(
+                List.of(newSessions.get(0).getId(), UUID.randomUUID(), newSessions.get(2).getId()));
+
+        assertEquals(STOPPED, results.get(0).getOutcome());
+        assertEquals(FINISHED, results.get(0).getSession().getStatus());
+        assertEquals(NOT_FOUND, results.get(1).getOutcome());
+        assertEquals(ALREADY_STOPPED, results.get(2).getOutcome());
+        assertEquals(List.of(newSessions.get(1)), chargingSessionRepository.findActiveSessions());
+        verify(sessionJournal, times(1)).appendStops(List.of(results.get(0).getSession()));
+    }
+
+    @Test
+    public void testAddAndStopSessionsAsynchronously() {
+        CompletableFuture<Void> startsWritten = new CompletableFuture<>();
+        when(sessionJournal.appendStartsAsync(any())).thenReturn(startsWritten);
+        when(sessionJournal.appendStopsAsync(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        // the session is stored right away, the future completes once its record is written
+        CompletableFuture<ChargingSession> newSession = chargingSessionRepository.addNewSessionAsync("stationA");
+        assertFalse(newSession.isDone());
+        assertEquals(1, chargingSessionRepository.findByStationId("stationA").size());
+
+        startsWritten.complete(null);
+        UUID sessionId = newSession.join().getId();
+        assertEquals(STOPPED, chargingSessionRepository.stopSessionAsync(sessionId).join().getOutcome());
+        assertEquals(ALREADY_STOPPED, chargingSessionRepository.stopSessionAsync(sessionId).join().getOutcome());
+        verify(sessionJournal, times(1)).appendStopsAsync(any());
+        verify(sessionJournal, never()).appendStart(any());
+    }
+
+    @Test
+    public void testFailedJournalFailsTheFuture() {
+        when(sessionJournal.appendStartsAsync(any())).thenReturn(CompletableFuture.failedFuture(new UncheckedIOException(
+                new IOException("disk full"))));
+
+        CompletableFuture<List<ChargingSession>> newSessions = chargingSessionRepository.addNewSessionsAsync(List.of("stationA"));
+        assertTrue(newSessions.isCompletedExceptionally());
+        // the sessions that failed to be journaled are not kept
+        assertTrue(chargingSessionRepository.findAllSessions().isEmpty());
+        assertTrue(chargingSessionRepository.findByStationId("stationA").isEmpty());
+        assertEquals(0, chargingSessionRepository.countSessions());
+    }
+
+    @Test
+    public void testFailedJournalDiscardsTheNewSession() {
+        long now = System.currentTimeMillis();
+        doThrow(new UncheckedIOException(new IOException("disk full"))).when(sessionJournal).appendStart(any());
+
+        try {
+            chargingSessionRepository.addNewSession("stationA");
+            fail("The journal failure should be thrown");
+        } catch (UncheckedIOException e) {
+            assertEquals("disk full", e.getCause().getMessage());
+        }
+
+        assertTrue(chargingSessionRepository.findAllSessions().isEmpty());
+        assertTrue(chargingSessionRepository.findActiveSessions().isEmpty());
+        assertEquals(0, chargingSessionRepository.countActiveSessions());
+        assertTrue(chargingSessionRepository.countSessionsByPeriod(now, now + DAY.getMillis(), DAY).isEmpty());
+
+        // the retry stores a single session
+        doNothing().when(sessionJournal).appendStart(any());
+        ChargingSession newSession = chargingSessionRepository.addNewSession("stationA");
+        assertEquals(List.of(newSession), chargingSessionRepository.findByStationId("stationA"));
+        assertEquals(1, chargingSessionRepository.countSessions());
+    }
+
+    @Test
+    public void testFailedJournalResumesTheStoppedSession() {
+        ChargingSession newSession = chargingSessionRepository.addNewSession("stationA");
+        doThrow(new UncheckedIOException(new IOException("disk full"))).when(sessionJournal).appendStop(any());
+
+        try {
+            chargingSessionRepository.stopSession(newSession.getId());
+            fail("The journal failure should be thrown");
+        } catch (UncheckedIOException e) {
+            assertEquals("disk full", e.getCause().getMessage());
+        }
+
+        assertEquals(newSession, chargingSessionRepository.findById(newSession.getId()).orElseThrow());
+        assertEquals(List.of(newSession), chargingSessionRepository.findActiveSessions());
+
+        // the retry stops the session instead of finding it already stopped
+        doNothing().when(sessionJournal).appendStop(any());
+        assertEquals(STOPPED, chargingSessionRepository.stopSession(newSession.getId()).getOutcome());
+        assertTrue(chargingSessionRepository.findActiveSessions().isEmpty());
+    }
+
+    @Test
+    public void testFailedJournalResumesTheStoppedSessionsAsync() {
+        ChargingSession newSession = chargingSessionRepository.addNewSession("stationA");
+        when(sessionJournal.appendStopsAsync(any())).thenReturn(CompletableFuture.failedFuture(new UncheckedIOException(
+                new IOException("disk full"))));
+
+        assertTrue(chargingSessionRepository.stopSessionsAsync(List.of(newSession.getId())).isCompletedExceptionally());
+        assertEquals(IN_PROGRESS, chargingSessionRepository.findById(newSession.getId()).orElseThrow().getStatus());
+        assertEquals(1, chargingSessionRepository.countActiveSessions());
+    }
+
+    @Test
+    public void testCountSessionsByPeriod() {
+        long now = System.currentTimeMillis();
+        ChargingSession newSessionA = chargingSessionRepository.addNewSession("stationA");
+        chargingSessionRepository.addNewSession("stationB");
+        chargingSessionRepository.stopSession(newSessionA.getId());
+
+        List<SessionActivity> days = chargingSessionRepository.countSessionsByPeriod(now, now + 1, DAY);
+        assertEquals(1, days.size());
+        assertEquals(DAY.periodStart(now), days.get(0).getPeriodStart());
+        assertEquals(2, days.get(0).getStartedCount());
+        assertEquals(1, days.get(0).getStoppedCount());
+
+        long lastMinutes = MINUTE.getMillis() * 5;
+        assertEquals(2, chargingSessionRepository.countSessionsByPeriod(now - lastMinutes, now + lastMinutes, MINUTE).stream()
+                .mapToLong(SessionActivity::getStartedCount).sum());
+        assertTrue(chargingSessionRepository.countSessionsByPeriod(now - DAY.getMillis() * 30, DAY.periodStart(now), DAY).isEmpty());
+    }
+
+    @Test
+    public void testFindSessionsFrom() {
+        for (int i = 0; i < 5; i++) {
+            chargingSessionRepository.addNewSession("station" + i);
+        }
+
+        SessionPage firstPage = chargingSessionRepository.findSessionsFrom(0, 3);
+        SessionPage secondPage = chargingSessionRepository.findSessionsFrom(firstPage.getNextPosition(), 3);
+
+        assertEquals(3, firstPage.getSessions().size());
+        assertEquals(2, secondPage.getSessions().size());
+        assertEquals("station0", firstPage.getSessions().get(0).getStationId());
+        assertEquals("station3", secondPage.getSessions().get(0).getStationId());
+        assertEquals(-1, secondPage.getNextPosition());
+
+        Set<ChargingSession> allSessions = new HashSet<>(firstPage.getSessions());
+        allSessions.addAll(secondPage.getSessions());
+        assertEquals(chargingSessionRepository.findAllSessions(), allSessions);
+    }
+
+    @Test
+    public void testFindSessionsFromAcrossAnEviction() {
+        List<ChargingSession> sessions = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            sessions.add(chargingSessionRepository.stopSession(chargingSessionRepository.addNewSession("station" + i)
+                    .getId()).getSession());
+        }
+        SessionPage firstPage = chargingSessionRepository.findSessionsFrom(0, 2);
+        assertEquals(sessions.subList(0, 2), firstPage.getSessions());
+
+        // the last session of the first page and the next one are evicted before the second page
+        assertEquals(3, chargingSessionRepository.evictFinishedSessions(Long.MAX_VALUE, 0, 3).size());
+        SessionPage secondPage = chargingSessionRepository.findSessionsFrom(firstPage.getNextPosition(), 2);
+
+        assertEquals(sessions.subList(3, 5), secondPage.getSessions());
+        assertEquals(-1, secondPage.getNextPosition());
+    }
+
     @Test
     public void testFindById() {
         ChargingSession newSession = chargingSessionRepository.addNewSession("stationA");
@@ -81,4 +449,85 @@ public class ChargingSessionRepositoryImplTest {
         assertEquals(Optional.empty(), session);
     }
 
-}
\ No newline at end of file
+    @Test(expected = UnsupportedOperationException.class)
+    public void testFindAllSessionsIsReadOnly() {
+        chargingSessionRepository.addNewSession("stationA");
+        Set<ChargingSession> allSessions = chargingSessionRepository.findAllSessions();
+
+        allSessions.clear();
+    }
+
+    @Test
+    public void testEvictSessionsStoppedBefore() {
+        ChargingSession oldSession = chargingSessionRepository.addNewSession("stationA");
+        ChargingSession activeSession = chargingSessionRepository.addNewSession("stationA");
+        ChargingSession newSession = chargingSessionRepository.addNewSession("stationB");
+        chargingSessionRepository.stopSession(oldSession.getId());
+        chargingSessionRepository.stopSession(newSession.getId());
+
+        long stoppedBefore = chargingSessionRepository.findById(newSession.getId()).get().getStoppedAt().getTime();
+        List<ChargingSession> evicted = chargingSessionRepository.evictFinishedSessions(stoppedBefore + 1, 0, 100);
+
+        assertEquals(Set.of(oldSession.getId(), newSession.getId()),
+                evicted.stream().map(ChargingSession::getId).collect(Collectors.toSet()));
+        assertEquals(Optional.empty(), chargingSessionRepository.findById(oldSession.getId()));
+        assertEquals(Set.of(activeSession), chargingSessionRepository.findAllSessions());
+        assertEquals(List.of(activeSession), chargingSessionRepository.findByStationId("stationA"));
+        assertEquals(List.of(), chargingSessionRepository.findByStationId("stationB"));
+        assertEquals(NOT_FOUND, chargingSessionRepository.stopSession(oldSession.getId()).getOutcome());
+    }
+
+    @Test
+    public void testEvictOldestFinishedSessionsOverMaxSessions() {
+        List<ChargingSession> sessions = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            sessions.add(chargingSessionRepository.addNewSession("station" + i));
+        }
+        for (ChargingSession session : sessions.subList(1, 10)) {
+            chargingSessionRepository.stopSession(session.getId());
+        }
+
+        // the oldest session is in progress, it is kept
+        List<ChargingSession> evicted = chargingSessionRepository.evictFinishedSessions(Long.MIN_VALUE, 6, 100);
+
+        assertEquals(4, evicted.size());
+        assertEquals(sessions.get(1).getId(), evicted.get(0).getId());
+        assertEquals(sessions.get(4).getId(), evicted.get(3).getId());
+        assertEquals(6, chargingSessionRepository.findAllSessions().size());
+        SessionPage firstPage = chargingSessionRepository.findSessionsFrom(0, 1);
+        assertEquals(List.of(sessions.get(0)), firstPage.getSessions());
+        assertEquals(sessions.get(5).getId(), chargingSessionRepository.findSessionsFrom(firstPage.getNextPosition(), 1)
+                .getSessions().get(0).getId());
+        assertEquals(List.of(), chargingSessionRepository.evictFinishedSessions(Long.MIN_VALUE, 6, 100));
+    }
+
+    @Test
+    public void testEvictInBatches() {
+        for (int i = 0; i < 10; i++) {
+            chargingSessionRepository.stopSession(chargingSessionRepository.addNewSession("stationA").getId());
+        }
+
+        assertEquals(3, chargingSessionRepository.evictFinishedSessions(Long.MAX_VALUE, 0, 3).size());
+        assertEquals(3, chargingSessionRepository.evictFinishedSessions(Long.MAX_VALUE, 0, 3).size());
+        assertEquals(3, chargingSessionRepository.evictFinishedSessions(Long.MAX_VALUE, 0, 3).size());
+        assertEquals(1, chargingSessionRepository.evictFinishedSessions(Long.MAX_VALUE, 0, 3).size());
+        assertEquals(Set.of(), chargingSessionRepository.findAllSessions());
+    }
+
+    @Test
+    public void testEvictReleasesTheMemoryOfFullChunks() {
+        int sessionCount = 2 * SessionSlab.CHUNK_SIZE;
+        for (int i = 0; i < sessionCount; i++) {
+            chargingSessionRepository.stopSession(chargingSessionRepository.addNewSession("station" + i % 10).getId());
+        }
+        long memoryFootprint = chargingSessionRepository.memoryFootprint();
+
+        chargingSessionRepository.evictFinishedSessions(Long.MAX_VALUE, 0, SessionSlab.CHUNK_SIZE);
+
+        assertTrue(chargingSessionRepository.memoryFootprint() < memoryFootprint);
+        assertEquals(SessionSlab.CHUNK_SIZE, chargingSessionRepository.findAllSessions().size());
+        assertEquals(SessionSlab.CHUNK_SIZE / 10, chargingSessionRepository.findByStationId("station0").size());
+        assertEquals(SessionSlab.CHUNK_SIZE, chargingSessionRepository.findSessionsFrom(0, sessionCount).getSessions().size());
+    }
+
+}
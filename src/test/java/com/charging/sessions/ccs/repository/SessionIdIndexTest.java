@@ -0,0 +1,83 @@
+package com.charging.sessions.ccs.repository;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SessionIdIndexTest {
+
+    private final SessionIdIndex sessionIds = new SessionIdIndex();
+
+    @Test
+    public void testGetAfterResize() {
+        List<UUID> ids = new ArrayList<>();
+        for (int slot = 0; slot < 100_000; slot++) {
+            UUID id = UUID.randomUUID();
+            ids.add(id);
+            sessionIds.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), slot);
+        }
+
+        for (int slot = 0; slot < ids.size(); slot++) {
+            UUID id = ids.get(slot);
+            assertEquals(slot, sessionIds.get(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+        }
+        UUID unknownId = UUID.randomUUID();
+        assertEquals(-1, sessionIds.get(unknownId.getMostSignificantBits(), unknownId.getLeastSignificantBits()));
+    }
+
+    @Test
+    public void testRemove() {
+        List<UUID> ids = new ArrayList<>();
+        for (int slot = 0; slot < 100_000; slot++) {
+            UUID id = UUID.randomUUID();
+            ids.add(id);
+            sessionIds.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), slot);
+        }
+
+        // removing every other id shifts the colliding ones back, they are still found
+        for (int slot = 0; slot < ids.size(); slot += 2) {
+            UUID id = ids.get(slot);
+            assertTrue(sessionIds.remove(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+        }
+        for (int slot = 0; slot < ids.size(); slot++) {
+            UUID id = ids.get(slot);
+            assertEquals(slot % 2 == 0 ? -1 : slot,
+                    sessionIds.get(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+        }
+        UUID unknownId = UUID.randomUUID();
+        assertFalse(sessionIds.remove(unknownId.getMostSignificantBits(), unknownId.getLeastSignificantBits()));
+    }
+
+    @Test
+    public void testConcurrentPutAndGet() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                int firstSlot = thread * 10_000;
+                futures.add(executorService.submit(() -> {
+                    for (int slot = firstSlot; slot < firstSlot + 10_000; slot++) {
+                        UUID id = UUID.randomUUID();
+                        sessionIds.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), slot);
+                        assertEquals(slot, sessionIds.get(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+}
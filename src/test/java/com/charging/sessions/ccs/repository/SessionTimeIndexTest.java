@@ -0,0 +1,44 @@
+package com.charging.sessions.ccs.repository;
+
+import com.charging.sessions.ccs.model.SessionActivity;
+import org.junit.Test;
+
+import java.util.List;
+
+import static com.charging.sessions.ccs.model.TimeGranularity.HOUR;
+import static com.charging.sessions.ccs.model.TimeGranularity.MINUTE;
+import static org.junit.Assert.assertEquals;
+
+public class SessionTimeIndexTest {
+
+    private static final long MINUTE_MILLIS = MINUTE.getMillis();
+
+    private final SessionTimeIndex sessionTimes = new SessionTimeIndex();
+
+    @Test
+    public void testCountEventsOutOfPeriodOrder() {
+        // the latest period is counted without a lookup, an event of an older period still lands in its own
+        sessionTimes.recordStart(10 * MINUTE_MILLIS + 1);
+        sessionTimes.recordStart(9 * MINUTE_MILLIS + 59_999);
+        sessionTimes.recordStart(10 * MINUTE_MILLIS + 59_999);
+        sessionTimes.recordStop(11 * MINUTE_MILLIS);
+        sessionTimes.recordStop(10 * MINUTE_MILLIS + 2);
+
+        assertEquals(List.of(
+                new SessionActivity(9 * MINUTE_MILLIS, 1, 0),
+                new SessionActivity(10 * MINUTE_MILLIS, 2, 1),
+                new SessionActivity(11 * MINUTE_MILLIS, 0, 1)),
+                sessionTimes.activity(0, 12 * MINUTE_MILLIS, MINUTE));
+        assertEquals(List.of(new SessionActivity(0, 3, 2)), sessionTimes.activity(0, HOUR.getMillis(), HOUR));
+    }
+
+    @Test
+    public void testClear() {
+        sessionTimes.recordStart(10 * MINUTE_MILLIS);
+        sessionTimes.clear();
+        sessionTimes.recordStart(10 * MINUTE_MILLIS + 1);
+
+        assertEquals(List.of(new SessionActivity(10 * MINUTE_MILLIS, 1, 0)),
+                sessionTimes.activity(0, 12 * MINUTE_MILLIS, MINUTE));
+    }
+}
@@ -0,0 +1,41 @@
+package com.charging.sessions.ccs.repository;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimeOrderedSessionIdGeneratorTest {
+
+    private final SessionIdGenerator sessionIdGenerator = new TimeOrderedSessionIdGenerator();
+
+    @Test
+    public void testVersionVariantAndTime() {
+        long before = System.currentTimeMillis();
+        UUID id = sessionIdGenerator.nextId();
+        long after = System.currentTimeMillis();
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        long createdAt = id.getMostSignificantBits() >>> 16;
+        assertTrue(createdAt >= before && createdAt <= after);
+        assertEquals(id, UUID.fromString(id.toString()));
+    }
+
+    @Test
+    public void testIdsAreUniqueAndOrderedByMillisecond() throws InterruptedException {
+        Set<UUID> ids = new HashSet<>();
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(ids.add(sessionIdGenerator.nextId()));
+        }
+
+        UUID first = sessionIdGenerator.nextId();
+        Thread.sleep(2);
+        UUID second = sessionIdGenerator.nextId();
+        assertTrue(Long.compareUnsigned(first.getMostSignificantBits(), second.getMostSignificantBits()) < 0);
+    }
+}
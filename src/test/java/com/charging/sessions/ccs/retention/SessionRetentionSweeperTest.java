@@ -0,0 +1,129 @@
+package com.charging.sessions.ccs.retention;
+
+import com.charging.sessions.ccs.journal.SessionJournal;
+import com.charging.sessions.ccs.model.ChargingSession;
+import com.charging.sessions.ccs.repository.ChargingSessionRepositoryImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class SessionRetentionSweeperTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ChargingSessionRepositoryImpl repository = new ChargingSessionRepositoryImpl(SessionJournal.NONE);
+
+    private RetentionProperties properties;
+
+    @Before
+    public void setUp() {
+        properties = new RetentionProperties();
+        properties.setEnabled(true);
+        properties.setMaxSessions(2);
+        properties.setArchiveDirectory(temporaryFolder.getRoot().toPath());
+    }
+
+    @Test
+    public void testSweepArchivesTheEvictedSessions() throws IOException {
+        List<ChargingSession> sessions = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            sessions.add(repository.stopSession(repository.addNewSession("station" + i).getId()).getSession());
+        }
+        SessionRetentionSweeper sweeper = new SessionRetentionSweeper(repository, properties, objectMapper,
+                meterRegistry);
+
+        sweeper.sweep();
+        repository.stopSession(repository.addNewSession("station5").getId());
+        sweeper.sweep();
+
+        assertEquals(2, repository.findAllSessions().size());
+        assertEquals(4, meterRegistry.counter("ccs.sessions.evicted").count(), 0);
+        try (var files = Files.list(temporaryFolder.getRoot().toPath())) {
+            List<Path> archives = files.collect(Collectors.toList());
+            assertEquals(1, archives.size());
+
+            // both passes appended a gzip member to the same file
+            List<String> archivedIds = readArchivedIds(archives.get(0));
+            assertEquals(sessions.subList(0, 4).stream()
+                    .map(session -> session.getId().toString())
+                    .collect(Collectors.toList()), archivedIds);
+        }
+    }
+
+    @Test
+    public void testSweepWithoutArchive() {
+        properties.setArchiveDirectory(null);
+        for (int i = 0; i < 5; i++) {
+            repository.stopSession(repository.addNewSession("station" + i).getId());
+        }
+
+        new SessionRetentionSweeper(repository, properties, objectMapper, meterRegistry).sweep();
+
+        assertEquals(Set.of("station3", "station4"), repository.findAllSessions().stream()
+                .map(ChargingSession::getStationId)
+                .collect(Collectors.toSet()));
+        assertEquals(0, temporaryFolder.getRoot().list().length);
+    }
+
+    @Test
+    public void testSweepKeepsTheSessionsUntilArchived() throws IOException {
+        List<ChargingSession> sessions = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            sessions.add(repository.stopSession(repository.addNewSession("station" + i).getId()).getSession());
+        }
+        // a file in place of the archive directory, so that the archive cannot be written
+        Path archiveDirectory = temporaryFolder.newFile("archive").toPath();
+        properties.setArchiveDirectory(archiveDirectory);
+        SessionRetentionSweeper sweeper = new SessionRetentionSweeper(repository, properties, objectMapper,
+                meterRegistry);
+
+        sweeper.sweep();
+        assertEquals(5, repository.findAllSessions().size());
+        assertEquals(0, meterRegistry.counter("ccs.sessions.evicted").count(), 0);
+
+        Files.delete(archiveDirectory);
+        sweeper.sweep();
+        assertEquals(2, repository.findAllSessions().size());
+        assertEquals(3, meterRegistry.counter("ccs.sessions.evicted").count(), 0);
+        try (var files = Files.list(archiveDirectory)) {
+            List<Path> archives = files.collect(Collectors.toList());
+            assertEquals(1, archives.size());
+            assertEquals(sessions.subList(0, 3).stream()
+                    .map(session -> session.getId().toString())
+                    .collect(Collectors.toList()), readArchivedIds(archives.get(0)));
+        }
+    }
+
+    private List<String> readArchivedIds(Path archive) throws IOException {
+        try (var reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(archive)), StandardCharsets.UTF_8))) {
+            List<String> sessionIds = new ArrayList<>();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                sessionIds.add(objectMapper.readTree(line).get("id").asText());
+            }
+            return sessionIds;
+        }
+    }
+}
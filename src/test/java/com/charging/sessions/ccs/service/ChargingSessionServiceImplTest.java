@@ -1,24 +1,42 @@
 package com.charging.sessions.ccs.service;
 
+import com.charging.sessions.ccs.feed.SessionFeed;
 import com.charging.sessions.ccs.model.ChargingSession;
+import com.charging.sessions.ccs.model.SessionVisitor;
+import com.charging.sessions.ccs.model.SessionActivity;
+import com.charging.sessions.ccs.model.SessionPage;
+import com.charging.sessions.ccs.model.StopResult;
+import com.charging.sessions.ccs.payload.ChargingSessionBatchResultPayload;
+import com.charging.sessions.ccs.payload.ChargingSessionHistogramPayload;
+import com.charging.sessions.ccs.payload.ChargingSessionPagePayload;
 import com.charging.sessions.ccs.payload.ChargingSessionRequestPayload;
 import com.charging.sessions.ccs.payload.ChargingSessionResponsePayload;
 import com.charging.sessions.ccs.payload.ChargingSessionSummaryPayload;
 import com.charging.sessions.ccs.repository.ChargingSessionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 import static com.charging.sessions.ccs.model.SessionStatus.FINISHED;
 import static com.charging.sessions.ccs.model.SessionStatus.IN_PROGRESS;
+import static com.charging.sessions.ccs.model.TimeGranularity.HOUR;
+import static java.util.concurrent.CompletableFuture.completedFuture;
 import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(SpringRunner.class)
@@ -27,6 +45,15 @@ public class ChargingSessionServiceImplTest {
     @Mock
     private ChargingSessionRepository chargingSessionRepository;
 
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Mock
+    private SessionFeed sessionFeed;
+
+    @Spy
+    private IdempotencyProperties idempotencyProperties = new IdempotencyProperties();
+
     @InjectMocks
     private ChargingSessionServiceImpl chargingSessionService;
 
@@ -34,13 +61,14 @@ public class ChargingSessionServiceImplTest {
     public void testSubmitChargingSession() {
         ChargingSession session = getNewChargingSession("stationA");
 
-        when(chargingSessionRepository.addNewSession(anyString())).thenReturn(session);
+        when(chargingSessionRepository.addNewSessionAsync(anyString())).thenReturn(completedFuture(session));
 
         ChargingSessionRequestPayload request = new ChargingSessionRequestPayload("stationA");
-        ChargingSessionResponsePayload payload = chargingSessionService.submitChargingSession(request);
+        ChargingSessionResponsePayload payload = join(chargingSessionService.submitChargingSession(request));
 
         assertEquals(IN_PROGRESS.name(), payload.getStatus());
         assertEquals(request.getStationId(), payload.getStationId());
+        verify(sessionFeed).publish(SessionFeed.SESSION_STARTED, payload);
     }
 
     @Test
@@ -48,19 +76,19 @@ public class ChargingSessionServiceImplTest {
         ChargingSession newSession = getNewChargingSession("stationA");
         ChargingSession stoppedSession = stopChargingSession(newSession);
 
-        when(chargingSessionRepository.findById(any())).thenReturn(Optional.of(newSession));
-        when(chargingSessionRepository.stopSession(any())).thenReturn(stoppedSession);
+        when(chargingSessionRepository.stopSessionAsync(any())).thenReturn(completedFuture(StopResult.stopped(stoppedSession)));
 
-        ChargingSessionResponsePayload sessionPayload = chargingSessionService.stopChargingSession(newSession.getId());
+        ChargingSessionResponsePayload sessionPayload = join(chargingSessionService.stopChargingSession(newSession.getId()));
         assertEquals(newSession.getId().toString(), sessionPayload.getId());
         assertEquals(FINISHED.name(), sessionPayload.getStatus());
         assertNotNull(sessionPayload.getStoppedAt());
+        verify(sessionFeed).publish(SessionFeed.SESSION_STOPPED, sessionPayload);
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void testStopChargingSessionWithRandomId() {
-        when(chargingSessionRepository.findById(any())).thenReturn(Optional.empty());
-        chargingSessionService.stopChargingSession(UUID.randomUUID());
+        when(chargingSessionRepository.stopSessionAsync(any())).thenReturn(completedFuture(StopResult.notFound()));
+        join(chargingSessionService.stopChargingSession(UUID.randomUUID()));
     }
 
     @Test(expected = IllegalStateException.class)
@@ -68,43 +96,85 @@ public class ChargingSessionServiceImplTest {
         ChargingSession newSession = getNewChargingSession("stationA");
         ChargingSession stoppedSession = stopChargingSession(newSession);
 
-        when(chargingSessionRepository.findById(any())).thenReturn(Optional.of(stoppedSession));
+        when(chargingSessionRepository.stopSessionAsync(any())).thenReturn(completedFuture(StopResult.alreadyStopped(stoppedSession)));
+
+        join(chargingSessionService.stopChargingSession(newSession.getId()));
+    }
+
+    @Test
+    public void testFetchActiveChargingSessions() {
+        when(chargingSessionRepository.findActiveSessions()).thenReturn(List.of(getNewChargingSession("stationA")));
+
+        Set<ChargingSessionResponsePayload> activeSessions = chargingSessionService.fetchActiveChargingSessions();
+        assertEquals(1, activeSessions.size());
+        assertTrue(activeSessions.stream().allMatch(s -> s.getStatus().equals(IN_PROGRESS.name())));
+    }
+
+    @Test
+    public void testFetchChargingSessionsByStation() {
+        when(chargingSessionRepository.findByStationId("stationA")).thenReturn(List.of(getNewChargingSession("stationA")));
+
+        Set<ChargingSessionResponsePayload> stationSessions = chargingSessionService.fetchChargingSessionsByStation("stationA");
+        assertEquals(1, stationSessions.size());
+        assertTrue(stationSessions.stream().allMatch(s -> s.getStationId().equals("stationA")));
+    }
+
+    @Test
+    public void testFetchChargingSessionsPage() {
+        List<ChargingSession> sessions = List.of(getNewChargingSession("stationA"), getNewChargingSession("stationB"),
+                getNewChargingSession("stationC"));
+
+        when(chargingSessionRepository.findSessionsFrom(0, 2)).thenReturn(new SessionPage(sessions.subList(0, 2), 7));
+
+        ChargingSessionPagePayload page = chargingSessionService.fetchChargingSessions(null, 2);
+        assertEquals(2, page.getSessions().size());
+        assertEquals("stationA", page.getSessions().get(0).getStationId());
+        assertNotNull(page.getNextCursor());
+
+        when(chargingSessionRepository.findSessionsFrom(7, 2)).thenReturn(new SessionPage(sessions.subList(2, 3), -1));
+
+        ChargingSessionPagePayload nextPage = chargingSessionService.fetchChargingSessions(page.getNextCursor(), 2);
+        assertEquals(1, nextPage.getSessions().size());
+        assertEquals("stationC", nextPage.getSessions().get(0).getStationId());
+        assertNull(nextPage.getNextCursor());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFetchChargingSessionsPageWithInvalidCursor() {
+        chargingSessionService.fetchChargingSessions("invalid", 2);
+    }
 
-        chargingSessionService.stopChargingSession(newSession.getId());
+    @Test(expected = IllegalArgumentException.class)
+    public void testFetchChargingSessionsPageWithInvalidLimit() {
+        chargingSessionService.fetchChargingSessions(null, 0);
     }
 
     @Test
-    public void testFetchChargingSessions() {
-        Set<ChargingSession> sessions = new HashSet<>();
-        sessions.add(getNewChargingSession("stationA"));
-        sessions.add(getNewChargingSession("stationB"));
+    public void testVisitChargingSessions() {
+        SessionVisitor visitor = (idHi, idLo, stationId, startedAt, stoppedAt) -> {
+        };
 
-        when(chargingSessionRepository.findAllSessions()).thenReturn(sessions);
+        chargingSessionService.visitChargingSessions(visitor);
 
-        Set<ChargingSessionResponsePayload> allSessions = chargingSessionService.fetchChargingSessions();
-        assertTrue(allSessions.stream().anyMatch(s -> s.getStationId().equals("stationA")));
-        assertTrue(allSessions.stream().anyMatch(s -> s.getStationId().equals("stationB")));
+        verify(chargingSessionRepository).forEachSession(visitor);
+        assertEquals(1, meterRegistry.get(SessionMetrics.OPERATIONS).tag("operation", "fetch").timer().count());
     }
 
     @Test
-    public void testFetchChargingSessionsWithEmptyResult() {
-        when(chargingSessionRepository.findAllSessions()).thenReturn(new HashSet<>());
+    public void testFetchSessionsVersion() {
+        when(chargingSessionRepository.modificationVersion()).thenReturn(42L);
 
-        Set<ChargingSessionResponsePayload> allSessions = chargingSessionService.fetchChargingSessions();
-        assertTrue(allSessions.isEmpty());
+        assertEquals(42L, chargingSessionService.fetchSessionsVersion());
     }
 
     @Test
     public void testFetchSessionsSummaryCaseA() {
-        Set<ChargingSession> sessions = new HashSet<>();
-        sessions.add(getNewChargingSession("stationA"));
-        sessions.add(getNewChargingSession("stationB"));
+        submit(getNewChargingSession("stationA"));
+        submit(getNewChargingSession("stationB"));
 
         ChargingSession sessionC = getNewChargingSession("stationC");
-        ChargingSession stoppedSessionC = stopChargingSession(sessionC);
-        sessions.add(stoppedSessionC);
-
-        when(chargingSessionRepository.findAllSessions()).thenReturn(sessions);
+        submit(sessionC);
+        stop(sessionC);
 
         ChargingSessionSummaryPayload summary = chargingSessionService.fetchSessionsSummary();
 
@@ -115,17 +185,13 @@ public class ChargingSessionServiceImplTest {
 
     @Test
     public void testFetchSessionsSummaryCaseB() {
-        Set<ChargingSession> sessions = new HashSet<>();
-        sessions.add(getNewChargingSession("stationA"));
-        ChargingSession sessionB = getNewChargingSession("stationB");
-        sessionB.setStartedAt(Date.from(ZonedDateTime.now().minusMinutes(2).toInstant()));
-        sessions.add(sessionB);
+        submit(getNewChargingSession("stationA"));
+        ChargingSession sessionB = getChargingSession("stationB", Date.from(ZonedDateTime.now().minusMinutes(2).toInstant()));
+        submit(sessionB);
 
         ChargingSession sessionC = getNewChargingSession("stationC");
-        ChargingSession stoppedSession = stopChargingSession(sessionC);
-        sessions.add(stoppedSession);
-
-        when(chargingSessionRepository.findAllSessions()).thenReturn(sessions);
+        submit(sessionC);
+        stop(sessionC);
 
         ChargingSessionSummaryPayload summary = chargingSessionService.fetchSessionsSummary();
 
@@ -136,15 +202,10 @@ public class ChargingSessionServiceImplTest {
 
     @Test
     public void testFetchSessionsSummaryCaseC() {
-        Set<ChargingSession> sessions = new HashSet<>();
-        sessions.add(getNewChargingSession("stationA"));
-        ChargingSession sessionB = getNewChargingSession("stationB");
-        sessionB.setStartedAt(Date.from(ZonedDateTime.now().minusMinutes(2).toInstant()));
-
-        ChargingSession stoppedSession = stopChargingSession(sessionB);
-        sessions.add(stoppedSession);
-
-        when(chargingSessionRepository.findAllSessions()).thenReturn(sessions);
+        submit(getNewChargingSession("stationA"));
+        ChargingSession sessionB = getChargingSession("stationB", Date.from(ZonedDateTime.now().minusMinutes(2).toInstant()));
+        submit(sessionB);
+        stop(sessionB);
 
         ChargingSessionSummaryPayload summary = chargingSessionService.fetchSessionsSummary();
 
@@ -153,22 +214,194 @@ public class ChargingSessionServiceImplTest {
         assertEquals(2, summary.getTotalCount());
     }
 
+    @Test
+    public void testFetchSessionsSummaryWithoutSessions() {
+        ChargingSessionSummaryPayload summary = chargingSessionService.fetchSessionsSummary();
+
+        assertEquals(0, summary.getStoppedCount());
+        assertEquals(0, summary.getStartedCount());
+        assertEquals(0, summary.getTotalCount());
+    }
+
+    @Test
+    public void testSubmitChargingSessionsInBatch() {
+        ChargingSession sessionA = getNewChargingSession("stationA");
+        ChargingSession sessionB = getNewChargingSession("stationB");
+
+        when(chargingSessionRepository.addNewSessionsAsync(List.of("stationA", "stationB")))
+                .thenReturn(completedFuture(List.of(sessionA, sessionB)));
+
+        List<ChargingSessionBatchResultPayload> results = join(chargingSessionService.submitChargingSessions(List.of(
+                new ChargingSessionRequestPayload("stationA"), new ChargingSessionRequestPayload(" "),
+                new ChargingSessionRequestPayload("stationB"))));
+
+        assertEquals(3, results.size());
+        assertEquals(200, results.get(0).getStatus());
+        assertEquals(sessionA.getId().toString(), results.get(0).getSession().getId());
+        assertEquals(400, results.get(1).getStatus());
+        assertNull(results.get(1).getSession());
+        assertEquals(sessionB.getId().toString(), results.get(2).getSession().getId());
+        assertEquals(2, chargingSessionService.fetchSessionsSummary().getStartedCount());
+    }
+
+    @Test
+    public void testStopChargingSessionsInBatch() {
+        ChargingSession sessionA = getNewChargingSession("stationA");
+        ChargingSession sessionB = getNewChargingSession("stationB");
+        UUID unknownId = UUID.randomUUID();
+
+        when(chargingSessionRepository.stopSessionsAsync(List.of(sessionA.getId(), sessionB.getId(), unknownId)))
+                .thenReturn(completedFuture(List.of(StopResult.stopped(stopChargingSession(sessionA)),
+                        StopResult.alreadyStopped(stopChargingSession(sessionB)), StopResult.notFound())));
+
+        List<ChargingSessionBatchResultPayload> results = join(chargingSessionService.stopChargingSessions(List.of(
+                sessionA.getId().toString(), "not-a-uuid", sessionB.getId().toString(), unknownId.toString())));
+
+        assertEquals(200, results.get(0).getStatus());
+        assertEquals(FINISHED.name(), results.get(0).getSession().getStatus());
+        assertEquals(404, results.get(1).getStatus());
+        assertEquals("not-a-uuid", results.get(1).getId());
+        assertEquals(400, results.get(2).getStatus());
+        assertEquals(404, results.get(3).getStatus());
+        assertEquals(unknownId.toString(), results.get(3).getId());
+
+        assertEquals(2, meterRegistry.get(SessionMetrics.REJECTED_STOPS).tag("reason", "not_found").counter().count(), 0);
+        assertEquals(1, meterRegistry.get(SessionMetrics.REJECTED_STOPS).tag("reason", "already_stopped").counter().count(), 0);
+        assertEquals(1, meterRegistry.get(SessionMetrics.OPERATIONS).tag("operation", "stop.batch").timer().count());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStopChargingSessionsWithTooLargeBatch() {
+        join(chargingSessionService.stopChargingSessions(Collections.nCopies(1001, UUID.randomUUID().toString())));
+    }
+
+    @Test
+    public void testFetchSessionsHistogram() {
+        Date from = Date.from(ZonedDateTime.parse("2020-03-01T10:30:00Z").toInstant());
+        Date to = Date.from(ZonedDateTime.parse("2020-03-01T13:00:00Z").toInstant());
+        long tenOClock = ZonedDateTime.parse("2020-03-01T10:00:00Z").toInstant().toEpochMilli();
+        long twelveOClock = ZonedDateTime.parse("2020-03-01T12:00:00Z").toInstant().toEpochMilli();
+
+        when(chargingSessionRepository.countSessionsByPeriod(from.getTime(), to.getTime(), HOUR)).thenReturn(List.of(
+                new SessionActivity(tenOClock, 3, 1), new SessionActivity(twelveOClock, 0, 2)));
+
+        ChargingSessionHistogramPayload histogram = chargingSessionService.fetchSessionsSummary(from, to, "hour");
+
+        assertEquals("HOUR", histogram.getGranularity());
+        assertEquals(3, histogram.getPeriods().size());
+        assertEquals(tenOClock, histogram.getPeriods().get(0).getPeriodStart().getTime());
+        assertEquals(3, histogram.getPeriods().get(0).getStartedCount());
+        assertEquals(0, histogram.getPeriods().get(1).getStartedCount());
+        assertEquals(0, histogram.getPeriods().get(1).getStoppedCount());
+        assertEquals(2, histogram.getPeriods().get(2).getStoppedCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFetchSessionsHistogramWithInvalidGranularity() {
+        chargingSessionService.fetchSessionsSummary(new Date(0), new Date(1000), "week");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFetchSessionsHistogramWithTooManyPeriods() {
+        chargingSessionService.fetchSessionsSummary(new Date(0), new Date(TimeUnit.DAYS.toMillis(365)), "minute");
+    }
+
+    private void submit(ChargingSession session) {
+        when(chargingSessionRepository.addNewSessionAsync(anyString())).thenReturn(completedFuture(session));
+        join(chargingSessionService.submitChargingSession(new ChargingSessionRequestPayload(session.getStationId())));
+    }
+
+    private void stop(ChargingSession session) {
+        when(chargingSessionRepository.stopSessionAsync(session.getId()))
+                .thenReturn(completedFuture(StopResult.stopped(stopChargingSession(session))));
+        join(chargingSessionService.stopChargingSession(session.getId()));
+    }
+
+    @Test
+    public void testSubmitChargingSessionWithRepeatedIdempotencyKey() {
+        ChargingSession session = getNewChargingSession("stationA");
+
+        when(chargingSessionRepository.addNewSessionAsync("stationA")).thenReturn(completedFuture(session));
+
+        ChargingSessionRequestPayload request = new ChargingSessionRequestPayload("stationA");
+        ChargingSessionResponsePayload payload = join(chargingSessionService.submitChargingSession(request, "key"));
+        ChargingSessionResponsePayload retriedPayload = join(chargingSessionService.submitChargingSession(request, "key"));
+
+        assertEquals(session.getId().toString(), retriedPayload.getId());
+        assertSame(payload, retriedPayload);
+        verify(chargingSessionRepository, times(1)).addNewSessionAsync(anyString());
+        assertEquals(1, meterRegistry.get(SessionMetrics.DEDUPLICATED_SUBMITS).counter().count(), 0);
+        assertEquals(1, chargingSessionService.fetchSessionsSummary().getStartedCount());
+    }
+
+    @Test
+    public void testSubmitChargingSessionWithIdempotencyKeyOfAnotherStation() {
+        when(chargingSessionRepository.addNewSessionAsync("stationA"))
+                .thenReturn(completedFuture(getNewChargingSession("stationA")));
+
+        join(chargingSessionService.submitChargingSession(new ChargingSessionRequestPayload("stationA"), "key"));
+        try {
+            join(chargingSessionService.submitChargingSession(new ChargingSessionRequestPayload("stationB"), "key"));
+            fail("The reuse of the key for another station should be rejected");
+        } catch (IllegalStateException e) {
+            // a rejected reuse of the key is not a deduplicated submit
+            assertEquals(0, meterRegistry.get(SessionMetrics.DEDUPLICATED_SUBMITS).counter().count(), 0);
+        }
+    }
+
+    @Test
+    public void testFailedSubmitIsNotRememberedByIdempotencyKey() {
+        ChargingSession session = getNewChargingSession("stationA");
+
+        when(chargingSessionRepository.addNewSessionAsync("stationA"))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("journal failed")))
+                .thenReturn(completedFuture(session));
+
+        ChargingSessionRequestPayload request = new ChargingSessionRequestPayload("stationA");
+        assertTrue(chargingSessionService.submitChargingSession(request, "key").isCompletedExceptionally());
+        assertEquals(session.getId().toString(), join(chargingSessionService.submitChargingSession(request, "key")).getId());
+    }
+
+    @Test
+    public void testSubmitChargingSessionCompletesWithTheJournal() {
+        ChargingSession session = getNewChargingSession("stationA");
+        CompletableFuture<ChargingSession> journaled = new CompletableFuture<>();
+
+        when(chargingSessionRepository.addNewSessionAsync(anyString())).thenReturn(journaled);
+
+        CompletableFuture<ChargingSessionResponsePayload> payload =
+                chargingSessionService.submitChargingSession(new ChargingSessionRequestPayload("stationA"));
+        assertFalse(payload.isDone());
+        assertEquals(0, meterRegistry.get(SessionMetrics.OPERATIONS).tag("operation", "submit").timer().count());
+
+        journaled.complete(session);
+        assertEquals(session.getId().toString(), payload.join().getId());
+        assertEquals(1, meterRegistry.get(SessionMetrics.OPERATIONS).tag("operation", "submit").timer().count());
+    }
+
+    /**
+     * Wait for an operation, rethrowing its failure as is
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
     private ChargingSession getNewChargingSession(String stationId) {
-        ChargingSession session = new ChargingSession();
-        session.setId(UUID.randomUUID());
-        session.setStatus(IN_PROGRESS);
-        session.setStationId(stationId);
-        session.setStartedAt(new Date());
-        return session;
+        return getChargingSession(stationId, new Date());
+    }
+
+    private ChargingSession getChargingSession(String stationId, Date startedAt) {
+        return new ChargingSession(UUID.randomUUID(), stationId, startedAt, null, IN_PROGRESS);
     }
 
     private ChargingSession stopChargingSession(ChargingSession session) {
-        ChargingSession stoppedSession = new ChargingSession();
-        stoppedSession.setId(session.getId());
-        stoppedSession.setStatus(FINISHED);
-        stoppedSession.setStationId(session.getStationId());
-        stoppedSession.setStartedAt(session.getStartedAt());
-        stoppedSession.setStoppedAt(new Date());
-        return stoppedSession;
+        return session.stop(new Date());
     }
 }
\ No newline at end of file
@@ -0,0 +1,175 @@
+package com.charging.sessions.ccs.service;
+
+import com.charging.sessions.ccs.model.SessionVisitor;
+import com.charging.sessions.ccs.payload.ChargingSessionAnalyticsPayload;
+import com.charging.sessions.ccs.repository.ChargingSessionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(SpringRunner.class)
+public class SessionAnalyticsServiceImplTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    @Mock
+    private ChargingSessionRepository chargingSessionRepository;
+
+    private SessionAnalyticsServiceImpl sessionAnalyticsService;
+
+    @Before
+    public void setUp() {
+        // small chunks, so that the aggregates of many ranges are merged
+        var analyticsProperties = new AnalyticsProperties();
+        analyticsProperties.setParallelism(3);
+        analyticsProperties.setChunkSize(7);
+        sessionAnalyticsService = new SessionAnalyticsServiceImpl(chargingSessionRepository, new SimpleMeterRegistry(),
+                analyticsProperties);
+    }
+
+    @After
+    public void tearDown() {
+        sessionAnalyticsService.close();
+    }
+
+    @Test
+    public void testFetchSessionsAnalytics() {
+        var random = new Random(42);
+        int sessionCount = 1000;
+        String[] stationIds = new String[sessionCount];
+        long[] startedAt = new long[sessionCount];
+        long[] stoppedAt = new long[sessionCount];
+        long origin = 1_600_000_000_000L;
+        for (int i = 0; i < sessionCount; i++) {
+            stationIds[i] = "station" + random.nextInt(10);
+            startedAt[i] = origin + (long) (random.nextDouble() * TimeUnit.DAYS.toMillis(3));
+            // a fifth of the sessions are in progress
+            stoppedAt[i] = random.nextInt(5) == 0 ? 0 : startedAt[i] + (long) (random.nextDouble() * TimeUnit.HOURS.toMillis(4));
+        }
+        storeSessions(stationIds, startedAt, stoppedAt);
+
+        ChargingSessionAnalyticsPayload analytics = sessionAnalyticsService.fetchSessionsAnalytics().join();
+
+        assertEquals(sessionCount, analytics.getTotalCount());
+        Map<String, Long> expectedStations = new TreeMap<>();
+        for (String stationId : stationIds) {
+            expectedStations.merge(stationId, 1L, Long::sum);
+        }
+        assertEquals(expectedStations, analytics.getStations());
+
+        long[] durations = new long[sessionCount];
+        int finishedCount = 0;
+        for (int i = 0; i < sessionCount; i++) {
+            if (stoppedAt[i] != 0) {
+                durations[finishedCount++] = stoppedAt[i] - startedAt[i];
+            }
+        }
+        durations = Arrays.copyOf(durations, finishedCount);
+        Arrays.sort(durations);
+        var durationsPayload = analytics.getDurations();
+        assertEquals(finishedCount, durationsPayload.getCount());
+        assertEquals(Arrays.stream(durations).average().orElseThrow(), durationsPayload.getAverageMillis(), 1e-6);
+        assertEquals(durations[0], durationsPayload.getMinMillis());
+        assertEquals(durations[finishedCount - 1], durationsPayload.getMaxMillis());
+        assertPercentile(durations, 50, durationsPayload.getMedianMillis());
+        assertPercentile(durations, 90, durationsPayload.getP90Millis());
+        assertPercentile(durations, 95, durationsPayload.getP95Millis());
+        assertPercentile(durations, 99, durationsPayload.getP99Millis());
+
+        // the sessions in progress during each minute, counted one by one
+        long firstMinute = Arrays.stream(startedAt).min().orElseThrow() / MINUTE;
+        long lastMinute = Arrays.stream(stoppedAt).max().orElseThrow() / MINUTE;
+        long peakCount = 0;
+        long peakMinute = 0;
+        for (long minute = firstMinute; minute <= lastMinute; minute++) {
+            long inProgress = 0;
+            for (int i = 0; i < sessionCount; i++) {
+                if (startedAt[i] / MINUTE <= minute && (stoppedAt[i] == 0 || stoppedAt[i] / MINUTE >= minute)) {
+                    inProgress++;
+                }
+            }
+            if (inProgress > peakCount) {
+                peakCount = inProgress;
+                peakMinute = minute;
+            }
+        }
+        var concurrency = analytics.getConcurrency();
+        assertEquals(peakCount, concurrency.getPeakCount());
+        assertEquals(new Date(peakMinute * MINUTE), concurrency.getPeakFrom());
+        assertEquals(new Date((peakMinute + 1) * MINUTE), concurrency.getPeakTo());
+    }
+
+    @Test
+    public void testFetchSessionsAnalyticsWithoutSessions() {
+        storeSessions(new String[0], new long[0], new long[0]);
+
+        ChargingSessionAnalyticsPayload analytics = sessionAnalyticsService.fetchSessionsAnalytics().join();
+
+        assertEquals(0, analytics.getTotalCount());
+        assertTrue(analytics.getStations().isEmpty());
+        assertEquals(0, analytics.getDurations().getCount());
+        assertEquals(0, analytics.getDurations().getAverageMillis(), 0);
+        assertEquals(0, analytics.getDurations().getMinMillis());
+        assertEquals(0, analytics.getConcurrency().getPeakCount());
+        assertNull(analytics.getConcurrency().getPeakFrom());
+    }
+
+    @Test
+    public void testFetchSessionsAnalyticsAgainUntilModified() {
+        long origin = 1_600_000_000_000L;
+        storeSessions(new String[]{"stationA", "stationB"}, new long[]{origin, origin + MINUTE}, new long[]{origin + 5 * MINUTE, 0});
+        when(chargingSessionRepository.modificationVersion()).thenReturn(1L);
+
+        var analytics = sessionAnalyticsService.fetchSessionsAnalytics().join();
+        assertEquals(analytics, sessionAnalyticsService.fetchSessionsAnalytics().join());
+        verify(chargingSessionRepository, times(1)).sessionPositionLimit();
+        assertEquals(2, analytics.getConcurrency().getPeakCount());
+        assertEquals(new Date(origin - origin % MINUTE + MINUTE), analytics.getConcurrency().getPeakFrom());
+
+        when(chargingSessionRepository.modificationVersion()).thenReturn(2L);
+        sessionAnalyticsService.fetchSessionsAnalytics().join();
+        verify(chargingSessionRepository, times(2)).sessionPositionLimit();
+    }
+
+    /**
+     * Make the repository visit the sessions of the arrays, one position each
+     */
+    private void storeSessions(String[] stationIds, long[] startedAt, long[] stoppedAt) {
+        when(chargingSessionRepository.sessionPositionLimit()).thenReturn(stationIds.length);
+        doAnswer(invocation -> {
+            int toPosition = Math.min(invocation.<Integer>getArgument(1), stationIds.length);
+            SessionVisitor visitor = invocation.getArgument(2);
+            for (int position = invocation.<Integer>getArgument(0); position < toPosition; position++) {
+                visitor.visit(0, position, stationIds[position], startedAt[position], stoppedAt[position]);
+            }
+            return null;
+        }).when(chargingSessionRepository).forEachSession(anyInt(), anyInt(), any(SessionVisitor.class));
+    }
+
+    /**
+     * The percentile is the duration of the nearest rank, within the precision of the histogram
+     */
+    private static void assertPercentile(long[] sortedDurations, double percentile, long actual) {
+        long expected = sortedDurations[(int) Math.max(1, Math.ceil(percentile / 100 * sortedDurations.length)) - 1];
+        assertEquals(expected, actual, expected / 1000.0 + 1);
+    }
+}
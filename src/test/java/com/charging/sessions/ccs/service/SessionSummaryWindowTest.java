@@ -0,0 +1,65 @@
+package com.charging.sessions.ccs.service;
+
+import com.charging.sessions.ccs.payload.ChargingSessionSummaryPayload;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+
+public class SessionSummaryWindowTest {
+
+    private static final long NOW = 1_600_000_000_000L;
+
+    private SessionSummaryWindow summaryWindow = new SessionSummaryWindow();
+
+    @Test
+    public void testStartedSessionsInTheLastMinute() {
+        summaryWindow.recordStart(new Date(NOW - 1_000));
+        summaryWindow.recordStart(new Date(NOW - 30_000));
+        summaryWindow.recordStart(new Date(NOW - 120_000));
+
+        ChargingSessionSummaryPayload summary = summaryWindow.summary(NOW);
+
+        assertEquals(2, summary.getStartedCount());
+        assertEquals(0, summary.getStoppedCount());
+        assertEquals(2, summary.getTotalCount());
+    }
+
+    @Test
+    public void testStoppedSessionLeavesTheStartedCount() {
+        summaryWindow.recordStart(new Date(NOW - 10_000));
+        summaryWindow.recordStart(new Date(NOW - 5_000));
+        summaryWindow.recordStop(new Date(NOW - 10_000), new Date(NOW - 2_000));
+
+        ChargingSessionSummaryPayload summary = summaryWindow.summary(NOW);
+
+        assertEquals(1, summary.getStartedCount());
+        assertEquals(1, summary.getStoppedCount());
+        assertEquals(2, summary.getTotalCount());
+    }
+
+    @Test
+    public void testExpiredBucketsAreRecycled() {
+        summaryWindow.recordStart(new Date(NOW - 5_000));
+        summaryWindow.recordStop(new Date(NOW - 5_000), new Date(NOW - 4_000));
+
+        // same buckets one minute later
+        summaryWindow.recordStart(new Date(NOW + 55_000));
+
+        ChargingSessionSummaryPayload summary = summaryWindow.summary(NOW + 60_000);
+
+        assertEquals(1, summary.getStartedCount());
+        assertEquals(0, summary.getStoppedCount());
+    }
+
+    @Test
+    public void testEventsOlderThanTheBucketAreIgnored() {
+        summaryWindow.recordStart(new Date(NOW));
+        summaryWindow.recordStart(new Date(NOW - 60_000));
+
+        ChargingSessionSummaryPayload summary = summaryWindow.summary(NOW);
+
+        assertEquals(1, summary.getStartedCount());
+    }
+}